@@ -0,0 +1,103 @@
+package control;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import model.DataStorage;
+import model.ResearchGroup;
+import model.Seminar;
+
+/**
+ * The GroupLockBenchmark class measures the throughput of seminar changes made through
+ * SeminarCoordinatorController by 1, 4 and 16 writer threads, first with every thread changing the same
+ * research group, so that all of them wait on one lock, then with the threads spread over ten groups.
+ * Each change is written to the journal and synced to disk before the controller returns. The data
+ * store is kept in a temporary directory, deleted afterwards.
+ *
+ * Usage: GroupLockBenchmark [seconds]
+ *
+ */
+public class GroupLockBenchmark {
+	private static final int GROUPS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		File directory = Files.createTempDirectory("dpm-benchmark").toFile();
+		try {
+			DataStorage dataStore = new DataStorage(directory);
+			SystemAdminController admin = new SystemAdminController(dataStore);
+			ResearchGroup[] groups = new ResearchGroup[GROUPS];
+			for (int i=0; i < GROUPS; i++) {
+				groups[i] = new ResearchGroup("Group " + (i + 1), i + 1);
+				admin.registerResearchGroup(groups[i]);
+			}
+
+			for (int threads : new int[] {1, 4, 16}) {
+				System.out.printf("%2d writers, one group: %s%n", threads, run(dataStore, groups, threads, 1, seconds));
+				System.out.printf("%2d writers, %d groups: %s%n", threads, GROUPS,
+						run(dataStore, groups, threads, GROUPS, seconds));
+			}
+
+			int left = 0;
+			for (ResearchGroup g : groups) {
+				left += g.getSeminarList().size();
+			}
+			System.out.println(left == 0 ? "Every seminar added was removed" : left + " seminars were left behind");
+			dataStore.close();
+		} finally {
+			Files.walk(directory.toPath()).sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	//Runs the writer threads for the given time, each adding and removing seminars in one of the first
+	//groupCount groups, returning their throughput.
+	private static String run(DataStorage dataStore, ResearchGroup[] groups, int threadCount, int groupCount,
+			int seconds) throws Exception {
+		AtomicBoolean stop = new AtomicBoolean();
+		AtomicLong changes = new AtomicLong();
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+
+		for (int t=0; t < threadCount; t++) {
+			int writer = t;
+			SeminarCoordinatorController controller = new SeminarCoordinatorController(dataStore,
+					groups[t % groupCount]);
+			threads.add(new Thread(() -> {
+				long count = 0;
+				LocalDateTime start = LocalDateTime.now().plusDays(1);
+				try {
+					while (!stop.get()) {
+						Seminar seminar = new Seminar(start.plusMinutes(count), "Room " + writer, "Topic " + writer,
+								groups[writer % groupCount]);
+						controller.addSeminar(seminar);
+						controller.removeSeminar(seminar);
+						count += 2;
+					}
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+				changes.addAndGet(count);
+			}));
+		}
+
+		for (Thread t : threads) {
+			t.setUncaughtExceptionHandler((thread, e) -> failure.compareAndSet(null, e));
+			t.start();
+		}
+		Thread.sleep(seconds * 1000L);
+		stop.set(true);
+		for (Thread t : threads) {
+			t.join();
+		}
+		if (failure.get() != null) {
+			throw new IllegalStateException("A writer failed", failure.get());
+		}
+		return String.format("%.0f changes/s", (double) changes.get() / seconds);
+	}
+}
@@ -0,0 +1,182 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The ConcurrencyBenchmark class measures the throughput of searches against a DataStorage shared
+ * between threads, first with search threads alone and then alongside threads editing, removing and
+ * adding publications, and checks afterwards that no search failed and that the indexes agree with the
+ * publication list. One search in a hundred is a report going through the whole publication list.
+ *
+ * Usage: ConcurrencyBenchmark [publications] [readers] [writers] [seconds]
+ *
+ */
+public class ConcurrencyBenchmark {
+	private static final int AUTHORS = 5000;
+
+	public static void main(String[] args) throws Exception {
+		int publicationCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int readerCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int writerCount = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+		Random random = new Random(42);
+
+		DataStorage dataStore = new DataStorage();
+		dataStore.getFacetCounts();
+		dataStore.beginBulkLoad();
+		for (int i=0; i < publicationCount; i++) {
+			dataStore.addPublication(publication(random, i));
+		}
+		dataStore.endBulkLoad();
+
+		System.out.printf("Searches alone:         %s%n", run(dataStore, publicationCount, readerCount, 0, seconds));
+		System.out.printf("Searches with %d writers: %s%n", writerCount,
+				run(dataStore, publicationCount, readerCount, writerCount, seconds));
+		System.out.println(check(dataStore));
+	}
+
+	private static Publication publication(Random random, int i) {
+		ArrayList<String> names = new ArrayList<String>();
+		for (int a = 1 + random.nextInt(3); a > 0; a--) {
+			names.add("Author " + random.nextInt(AUTHORS));
+		}
+		Publication.publicationType type = Publication.publicationType.values()[random.nextInt(
+				Publication.publicationType.values().length)];
+		return new Book("P" + i, "Title " + i, names, "", 1 + random.nextInt(10), "staff" + random.nextInt(100)
+				+ "@dpm", type, LocalDate.of(1990, 1, 1).plusDays(random.nextInt(12000)), "", "");
+	}
+
+	//Runs the reader and writer threads for the given time, returning their throughput.
+	private static String run(DataStorage dataStore, int publicationCount, int readerCount, int writerCount,
+			int seconds) throws Exception {
+		AtomicBoolean stop = new AtomicBoolean();
+		AtomicLong reads = new AtomicLong();
+		AtomicLong writes = new AtomicLong();
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+
+		for (int t=0; t < readerCount; t++) {
+			Random random = new Random(t);
+			threads.add(new Thread(() -> {
+				long count = 0;
+				while (!stop.get()) {
+					search(dataStore, random, publicationCount);
+					count++;
+				}
+				reads.addAndGet(count);
+			}));
+		}
+		//Each writer edits its own share of the publications, so that none removes one another has removed.
+		for (int t=0; t < writerCount; t++) {
+			int first = t;
+			Random random = new Random(1000 + t);
+			threads.add(new Thread(() -> {
+				long count = 0;
+				try {
+					while (!stop.get()) {
+						edit(dataStore, random, first + writerCount * random.nextInt(publicationCount / writerCount));
+						count++;
+					}
+				} catch (DPMSystemException e) {
+					throw new RuntimeException(e);
+				}
+				writes.addAndGet(count);
+			}));
+		}
+
+		for (Thread t : threads) {
+			t.setUncaughtExceptionHandler((thread, e) -> failure.compareAndSet(null, e));
+			t.start();
+		}
+		Thread.sleep(seconds * 1000L);
+		stop.set(true);
+		for (Thread t : threads) {
+			t.join();
+		}
+		if (failure.get() != null) {
+			throw new IllegalStateException("A thread failed", failure.get());
+		}
+		return String.format("%.0f searches/s, %.0f edits/s", (double) reads.get() / seconds,
+				(double) writes.get() / seconds);
+	}
+
+	private static void search(DataStorage dataStore, Random random, int publicationCount) {
+		int search = random.nextInt(100);
+		if (search == 0) {
+			int[] types = new int[Publication.publicationType.values().length];
+			for (Publication p : dataStore.getPublicationList()) {
+				types[p.getPublicationType().ordinal()]++;
+			}
+			return;
+		}
+		try {
+			switch (search % 4) {
+			case 0:
+				dataStore.getPublicationByID("P" + random.nextInt(publicationCount));
+				break;
+			case 1:
+				dataStore.getPublicationsByAuthor("Author " + random.nextInt(AUTHORS));
+				break;
+			case 2:
+				dataStore.query().author("Author " + random.nextInt(AUTHORS))
+						.type(Publication.publicationType.values()[0]).stream().count();
+				break;
+			default:
+				PublicationPage page = dataStore.getPublicationsByType(Publication.publicationType.values()[0],
+						null, 20);
+				dataStore.getPublicationsByType(Publication.publicationType.values()[0], page.getNextCursor(), 20);
+				break;
+			}
+		} catch (DPMSystemException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	//Retitles or redates the publication, or removes it and adds it back.
+	private static void edit(DataStorage dataStore, Random random, int i) throws DPMSystemException {
+		Publication publication = dataStore.getPublicationByID("P" + i);
+		switch (random.nextInt(3)) {
+		case 0:
+			publication.setTitle("Title " + i + " revised " + random.nextInt(1000));
+			break;
+		case 1:
+			publication.setPublicationDate(LocalDate.of(1990, 1, 1).plusDays(random.nextInt(12000)));
+			break;
+		default:
+			dataStore.removePublication(publication);
+			dataStore.addPublication(publication);
+			break;
+		}
+	}
+
+	//Compares the indexes and facet counts against the publication list.
+	private static String check(DataStorage dataStore) {
+		List<Publication> publications = dataStore.getPublicationList();
+		int mismatches = 0;
+		long byAuthor = 0;
+		for (Publication p : publications) {
+			if (dataStore.getPublicationByID(p.getPublicationID()) != p
+					|| dataStore.getPublicationByTitle(p.getTitle()) != p) {
+				mismatches++;
+			}
+		}
+		for (int a=0; a < AUTHORS; a++) {
+			byAuthor += dataStore.getPublicationsByAuthor("Author " + a).size();
+		}
+		long expected = 0;
+		for (Publication p : publications) {
+			expected += p.getAuthorNames().stream().distinct().count();
+		}
+		if (byAuthor != expected || dataStore.getFacetCounts().getTotal() != publications.size()) {
+			mismatches++;
+		}
+		return mismatches == 0 ? "Indexes agree with the publication list"
+				: "Indexes disagree with the publication list in " + mismatches + " places";
+	}
+}
@@ -0,0 +1,159 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The FuzzyAuthorSearchBenchmark class measures the latency of fuzzy author searches through
+ * FuzzyAuthorIndex against working out the edit distance to every name, over a synthetic archive of
+ * publications with randomly generated author names, and checks that both find the same names.
+ *
+ * Usage: FuzzyAuthorSearchBenchmark [publications] [queries] [maxDistance]
+ *
+ */
+public class FuzzyAuthorSearchBenchmark {
+	private static final String[] SYLLABLES = {"an", "ber", "chen", "da", "el", "fi", "gor", "ha", "ito", "jo",
+			"ka", "li", "mar", "no", "ov", "pa", "qu", "ro", "sm", "ith", "ta", "ul", "va", "wi", "xu", "yo", "zh"};
+
+	public static void main(String[] args) {
+		int publicationCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int maxDistance = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		Random random = new Random(42);
+
+		String[] authors = new String[Math.max(1, publicationCount / 2)];
+		for (int i=0; i < authors.length; i++) {
+			authors[i] = word(random, 2) + " " + word(random, 3);
+		}
+
+		FuzzyAuthorIndex index = new FuzzyAuthorIndex();
+		LinkedHashSet<String> used = new LinkedHashSet<String>();
+		long start = System.nanoTime();
+		for (int i=0; i < publicationCount; i++) {
+			ArrayList<String> names = new ArrayList<String>();
+			for (int a = 1 + random.nextInt(3); a > 0; a--) {
+				names.add(authors[random.nextInt(authors.length)]);
+			}
+			used.addAll(names);
+			index.add(new Book("P" + i, "Title " + i, names, "", 1, "staff@dpm", Publication.publicationType.BOOK,
+					LocalDate.of(2000, 1, 1), "", ""));
+		}
+		System.out.printf("Indexed %d publications, %d distinct names, in %.0f ms%n", publicationCount, index.size(),
+				(System.nanoTime() - start) / 1e6);
+
+		String[] queries = new String[queryCount];
+		for (int i=0; i < queryCount; i++) {
+			queries[i] = misspell(random, authors[random.nextInt(authors.length)], 1 + random.nextInt(maxDistance));
+		}
+
+		for (int i=0; i < Math.min(200, queryCount); i++) {
+			index.search(queries[i], maxDistance, 10);
+		}
+
+		long[] indexed = new long[queryCount];
+		long candidates = 0;
+		for (int i=0; i < queryCount; i++) {
+			start = System.nanoTime();
+			index.search(queries[i], maxDistance, 10);
+			indexed[i] = System.nanoTime() - start;
+			candidates += index.getLastCandidateCount();
+		}
+
+		int scanned = Math.min(queryCount, 100);
+		long[] scanning = new long[scanned];
+		int agreeing = 0;
+		for (int i=0; i < scanned; i++) {
+			start = System.nanoTime();
+			List<String> expected = scan(used, queries[i], maxDistance);
+			scanning[i] = System.nanoTime() - start;
+
+			ArrayList<String> found = new ArrayList<String>();
+			for (FuzzyAuthorIndex.Match m : index.search(queries[i], maxDistance, Integer.MAX_VALUE)) {
+				found.add(AuthorIndex.normalize(m.getName()));
+			}
+			if (found.containsAll(expected) && expected.containsAll(found)) {
+				agreeing++;
+			}
+		}
+
+		System.out.printf("Trigram index: %s, %.1f candidates verified per query%n", percentiles(indexed),
+				(double) candidates / queryCount);
+		System.out.printf("Full scan:     %s%n", percentiles(scanning));
+		System.out.printf("Index and scan agree on %d of %d queries%n", agreeing, scanned);
+	}
+
+	//Returns the distinct names within the given distance of the query, by working out every edit distance.
+	private static List<String> scan(Iterable<String> authors, String query, int maxDistance) {
+		String key = AuthorIndex.normalize(query);
+		ArrayList<String> found = new ArrayList<String>();
+		for (String a : authors) {
+			String name = AuthorIndex.normalize(a);
+			if (!found.contains(name) && levenshtein(key, name) <= maxDistance) {
+				found.add(name);
+			}
+		}
+		return found;
+	}
+
+	private static int levenshtein(String a, String b) {
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j=0; j <= b.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i=1; i <= a.length(); i++) {
+			current[0] = i;
+			for (int j=1; j <= b.length(); j++) {
+				int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+				current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+			}
+			int[] t = previous;
+			previous = current;
+			current = t;
+		}
+		return previous[b.length()];
+	}
+
+	private static String word(Random random, int syllables) {
+		StringBuilder word = new StringBuilder();
+		for (int i=0; i < syllables; i++) {
+			word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		}
+		word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+		return word.toString();
+	}
+
+	//Applies the given number of random substitutions, insertions and deletions to the name.
+	private static String misspell(Random random, String name, int edits) {
+		StringBuilder misspelt = new StringBuilder(name);
+		for (int i=0; i < edits; i++) {
+			int at = random.nextInt(misspelt.length());
+			char c = (char) ('a' + random.nextInt(26));
+			switch (random.nextInt(3)) {
+			case 0:
+				misspelt.setCharAt(at, c);
+				break;
+			case 1:
+				misspelt.insert(at, c);
+				break;
+			default:
+				if (misspelt.length() > 1) {
+					misspelt.deleteCharAt(at);
+				}
+				break;
+			}
+		}
+		return misspelt.toString();
+	}
+
+	private static String percentiles(long[] nanos) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		return String.format("p50 %.1f us, p99 %.1f us, max %.1f us", sorted[sorted.length / 2] / 1e3,
+				sorted[(int) (sorted.length * 0.99)] / 1e3, sorted[sorted.length - 1] / 1e3);
+	}
+}
@@ -2,14 +2,20 @@ package control;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.function.Consumer;
 
 import model.AcademicStaff;
 import model.Book;
+import model.ConcurrentEditException;
 import model.ConferencePaper;
 import model.DPMSystemException;
 import model.DataStorage;
+import model.GroupLocks;
 import model.JournalPaper;
+import model.JournalRecord;
 import model.Publication;
+import model.ResearchGroup;
+import model.Transaction;
 
 /**
  * 
@@ -18,6 +24,9 @@ import model.Publication;
  */
 public class AcademicStaffController {
 	
+	//Version passed by the unversioned edits, which are applied whatever the publication's version.
+	private static final long ANY_VERSION = -1;
+	
 	private DataStorage dataStore;
 	private AcademicStaff staffMember;
 	
@@ -55,29 +64,46 @@ public class AcademicStaffController {
 	}
 	
 	/**
-	 * Adds publication to data store and staff member's publication lists.
+	 * Adds publication to data store and staff member's publication lists, as one transaction, so that
+	 * it is added to neither if it cannot be added to both.
 	 * 
 	 * @param publication
 	 * @throws DPMSystemException Passed to it from data storage or academic staff classes.
 	 */
 	public void addPublication(Publication publication) throws DPMSystemException {
-		dataStore.addPublication(publication);
-		staffMember.addPublication(publication);
-		dataStore.notifyViews();
-		dataStore.saveData(dataStore.getFile());
+		GroupLocks locks = dataStore.getGroupLocks();
+		ResearchGroup group = staffMember.getGroup();
+		locks.lockGroup(group);
+		try (Transaction transaction = dataStore.beginTransaction()) {
+			transaction.apply(() -> dataStore.addPublication(publication),
+					() -> dataStore.removePublication(publication));
+			transaction.apply(() -> staffMember.addPublication(publication),
+					() -> staffMember.removePublication(publication));
+			transaction.commit(JournalRecord.addPublication(staffMember, publication));
+		} finally {
+			locks.unlockGroup(group);
+		}
 	}
 	
 	/**
-	 * Removes publication from data store and staff member's publication lists.
+	 * Removes publication from data store and staff member's publication lists, as one transaction.
 	 * 
 	 * @param publication
 	 * @throws DPMSystemException Passed to it from data storage or academic staff classes.
 	 */
 	public void removePublication(Publication publication) throws DPMSystemException {
-		dataStore.removePublication(publication);
-		staffMember.removePublication(publication);
-		dataStore.notifyViews();
-		dataStore.saveData(dataStore.getFile());
+		GroupLocks locks = dataStore.getGroupLocks();
+		ResearchGroup group = staffMember.getGroup();
+		locks.lockGroup(group);
+		try (Transaction transaction = dataStore.beginTransaction()) {
+			transaction.apply(() -> dataStore.removePublication(publication),
+					() -> dataStore.addPublication(publication));
+			transaction.apply(() -> staffMember.removePublication(publication),
+					() -> staffMember.addPublication(publication));
+			transaction.commit(JournalRecord.removePublication(staffMember, publication));
+		} finally {
+			locks.unlockGroup(group);
+		}
 	}
 	
 	/**
@@ -93,26 +119,32 @@ public class AcademicStaffController {
 	 */
 	public void editPublication(String publicationID, String title, ArrayList<String> authorNames, String aBstract, 
 			String journalName, int pageNumber) throws DPMSystemException {
-		boolean edited = false;
-		
-		for (Publication p : dataStore.getPublicationList()) {
-			if (p.getPublicationID().equals(publicationID)) {
-				JournalPaper paper = (JournalPaper) p;
-				paper.setTitle(title);
-				paper.setAuthorNames(authorNames);
-				paper.setaBstract(aBstract);
-				paper.setJournalName(journalName);
-				paper.setPageNumber(pageNumber);
-				edited = true;
-			}
-		}
-		
-		if (!edited) {
-			throw new DPMSystemException("Publication not found in list.");
-		}
-		
-		dataStore.notifyViews();
-		dataStore.saveData(dataStore.getFile());
+		editPublication(publicationID, ANY_VERSION, title, authorNames, aBstract, journalName, pageNumber);
+	}
+	
+	/**
+	 * Replaces specified variables of journal paper with given parameters, provided it is still at the
+	 * given version.
+	 * 
+	 * @param publicationID
+	 * @param version Modification count of the journal paper when it was read.
+	 * @param title
+	 * @param authorNames
+	 * @param aBstract
+	 * @param journalName
+	 * @param pageNumber
+	 * @throws ConcurrentEditException If the journal paper has been changed since it was read.
+	 * @throws DPMSystemException If the publication is not found in the publication list.
+	 */
+	public void editPublication(String publicationID, long version, String title, ArrayList<String> authorNames,
+			String aBstract, String journalName, int pageNumber) throws DPMSystemException {
+		editPublication(publicationID, version, JournalPaper.class, paper -> {
+			paper.setTitle(title);
+			paper.setAuthorNames(authorNames);
+			paper.setaBstract(aBstract);
+			paper.setJournalName(journalName);
+			paper.setPageNumber(pageNumber);
+		});
 	}
 	
 	/**
@@ -129,27 +161,36 @@ public class AcademicStaffController {
 	 */
 	public void editPublication(String publicationID, String title, ArrayList<String> authorNames, String aBstract,
 			String conferenceName, String conferenceLocation, LocalDate conferenceDate) throws DPMSystemException {
-		boolean edited = false;
-		
-		for (Publication p : dataStore.getPublicationList()) {
-			if (p.getPublicationID().equals(publicationID)) {
-				ConferencePaper paper = (ConferencePaper) p;
-				paper.setTitle(title);
-				paper.setAuthorNames(authorNames);
-				paper.setaBstract(aBstract);
-				paper.setConferenceName(conferenceName);
-				paper.setConferenceLocation(conferenceLocation);
-				paper.setConferenceDate(conferenceDate);
-				edited = true;
-			}
-		}
-		
-		if (!edited) {
-			throw new DPMSystemException("Publication not found in list.");
-		}
-		
-		dataStore.notifyViews();
-		dataStore.saveData(dataStore.getFile());
+		editPublication(publicationID, ANY_VERSION, title, authorNames, aBstract, conferenceName, conferenceLocation,
+				conferenceDate);
+	}
+	
+	/**
+	 * Replaces specified variables of conference paper with given parameters, provided it is still at the
+	 * given version.
+	 * 
+	 * @param publicationID
+	 * @param version Modification count of the conference paper when it was read.
+	 * @param title
+	 * @param authorNames
+	 * @param aBstract
+	 * @param conferenceName
+	 * @param conferenceLocation
+	 * @param conferenceDate
+	 * @throws ConcurrentEditException If the conference paper has been changed since it was read.
+	 * @throws DPMSystemException If the publication is not found in the publication list.
+	 */
+	public void editPublication(String publicationID, long version, String title, ArrayList<String> authorNames,
+			String aBstract, String conferenceName, String conferenceLocation, LocalDate conferenceDate)
+			throws DPMSystemException {
+		editPublication(publicationID, version, ConferencePaper.class, paper -> {
+			paper.setTitle(title);
+			paper.setAuthorNames(authorNames);
+			paper.setaBstract(aBstract);
+			paper.setConferenceName(conferenceName);
+			paper.setConferenceLocation(conferenceLocation);
+			paper.setConferenceDate(conferenceDate);
+		});
 	}
 	
 	/**
@@ -165,26 +206,137 @@ public class AcademicStaffController {
 	 */
 	public void editPublication(String publicationID, String title, ArrayList<String> authorNames, String aBstract,
 			String iSBN, String publisher) throws DPMSystemException {
-		boolean edited = false;
+		editPublication(publicationID, ANY_VERSION, title, authorNames, aBstract, iSBN, publisher);
+	}
+	
+	/**
+	 * Replaces specified variables of book with given parameters, provided it is still at the given
+	 * version.
+	 * 
+	 * @param publicationID
+	 * @param version Modification count of the book when it was read.
+	 * @param title
+	 * @param authorNames
+	 * @param aBstract
+	 * @param iSBN
+	 * @param publisher
+	 * @throws ConcurrentEditException If the book has been changed since it was read.
+	 * @throws DPMSystemException If the publication is not found in the publication list.
+	 */
+	public void editPublication(String publicationID, long version, String title, ArrayList<String> authorNames,
+			String aBstract, String iSBN, String publisher) throws DPMSystemException {
+		editPublication(publicationID, version, Book.class, paper -> {
+			paper.setTitle(title);
+			paper.setAuthorNames(authorNames);
+			paper.setaBstract(aBstract);
+			paper.setiSBN(iSBN);
+			paper.setPublisher(publisher);
+		});
+	}
+	
+	//Applies the edit to the publication as one transaction, so that other threads see all of it or none,
+	//provided the publication is still at the given version. The version is checked first without
+	//locking, so that a stale edit fails at once, then again once the edit holds the data store's lock,
+	//which every change to a publication takes, whichever group the editor belongs to. The group locked is
+	//that of the publication's owner, under whom it is saved, rather than the editor's. The fields are set
+	//back to their old values if the transaction is aborted, such as when the journal cannot be written.
+	private <T extends Publication> void editPublication(String publicationID, long version, Class<T> type,
+			Consumer<T> edit) throws DPMSystemException {
+		Publication current = dataStore.getPublicationByID(publicationID);
+		if (current != null && version != ANY_VERSION) {
+			current.checkVersion(version);
+		}
 		
-		for (Publication p : dataStore.getPublicationList()) {
-			if (p.getPublicationID().equals(publicationID)) {
-				Book paper = (Book) p;
-				paper.setTitle(title);
-				paper.setAuthorNames(authorNames);
-				paper.setaBstract(aBstract);
-				paper.setiSBN(iSBN);
-				paper.setPublisher(publisher);
-				edited = true;
+		GroupLocks locks = dataStore.getGroupLocks();
+		while (true) {
+			ResearchGroup group = getOwnerGroup(current);
+			locks.lockGroup(group);
+			try {
+				Publication edited = dataStore.getPublicationByID(publicationID);
+			
+				if (edited == null) {
+					throw new DPMSystemException("Publication not found in list.");
+				}
+				//The owner may have changed before the lock was taken, in which case their group is locked
+				//instead.
+				if (getOwnerGroup(edited) != group) {
+					current = edited;
+					continue;
+				}
+			
+				try (Transaction transaction = dataStore.beginTransaction()) {
+					if (version != ANY_VERSION) {
+						edited.checkVersion(version);
+					}
+				
+					T paper = type.cast(edited);
+					transaction.apply(() -> paper.update(() -> edit.accept(paper)), restoreFields(paper));
+					transaction.commit(JournalRecord.editPublication(edited));
+				}
+				return;
+			} finally {
+				locks.unlockGroup(group);
 			}
 		}
+	}
+	
+	//Returns a step setting the fields an edit changes back to the values they have now, so that an edit
+	//whose transaction is aborted is undone.
+	private static Transaction.Step restoreFields(Publication publication) {
+		String title = publication.getTitle();
+		ArrayList<String> authorNames = publication.getAuthorNames();
+		String aBstract = publication.getaBstract();
+		Runnable restoreType;
 		
-		if (!edited) {
-			throw new DPMSystemException("Publication not found in list.");
+		if (publication instanceof JournalPaper) {
+			JournalPaper paper = (JournalPaper) publication;
+			String journalName = paper.getJournalName();
+			int pageNumber = paper.getPageNumber();
+			restoreType = () -> {
+				paper.setJournalName(journalName);
+				paper.setPageNumber(pageNumber);
+			};
+		} else if (publication instanceof ConferencePaper) {
+			ConferencePaper paper = (ConferencePaper) publication;
+			String conferenceName = paper.getConferenceName();
+			String conferenceLocation = paper.getConferenceLocation();
+			LocalDate conferenceDate = paper.getConferenceDate();
+			restoreType = () -> {
+				paper.setConferenceName(conferenceName);
+				paper.setConferenceLocation(conferenceLocation);
+				paper.setConferenceDate(conferenceDate);
+			};
+		} else if (publication instanceof Book) {
+			Book book = (Book) publication;
+			String iSBN = book.getiSBN();
+			String publisher = book.getPublisher();
+			restoreType = () -> {
+				book.setiSBN(iSBN);
+				book.setPublisher(publisher);
+			};
+		} else {
+			restoreType = () -> {};
 		}
 		
-		dataStore.notifyViews();
-		dataStore.saveData(dataStore.getFile());
+		return () -> publication.update(() -> {
+			publication.setTitle(title);
+			publication.setAuthorNames(authorNames);
+			publication.setaBstract(aBstract);
+			restoreType.run();
+		});
+	}
+	
+	//Returns the group of the staff member owning the publication, or the editor's group if it has no
+	//listed owner.
+	private ResearchGroup getOwnerGroup(Publication publication) {
+		if (publication != null) {
+			for (AcademicStaff a : dataStore.getAcademicStaffList()) {
+				if (a.getEmailAddress().equals(publication.getStaffEmail())) {
+					return a.getGroup();
+				}
+			}
+		}
+		return staffMember.getGroup();
 	}
 	
 	/**
@@ -3,24 +3,27 @@ package control;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.List;
 
+import model.ConcurrentEditException;
 import model.DPMSystemException;
 import model.DataStorage;
+import model.GroupLocks;
 import model.GroupMember;
+import model.JournalRecord;
 import model.Publication;
 import model.ResearchGroup;
 import model.Seminar;
 
 public class SeminarCoordinatorController {
 	
+	//Version passed by the unversioned edit, which is applied whatever the seminar's version.
+	private static final long ANY_VERSION = -1;
+	
 	private DataStorage dataStore;
 	private ResearchGroup group;
-	private ArrayList<Publication> lastMonthsPublications;
-	private ArrayList<String> memberEmailList;
 	
 	public SeminarCoordinatorController(DataStorage dataStore, ResearchGroup group) {
-		this.lastMonthsPublications = new ArrayList<Publication>();
-		this.memberEmailList = new ArrayList<String>();
 		this.dataStore = dataStore;
 		this.group = group;
 	}
@@ -32,9 +35,15 @@ public class SeminarCoordinatorController {
 	 * @throws DPMSystemException
 	 */
 	public void addSeminar(Seminar seminar) throws DPMSystemException {
-		group.addNewSeminar(seminar);
-		dataStore.notifyViews();
-		dataStore.saveData(dataStore.getFile());
+		GroupLocks locks = dataStore.getGroupLocks();
+		locks.lockGroup(group);
+		try {
+			group.addNewSeminar(seminar);
+			dataStore.notifyViews();
+			dataStore.persist(JournalRecord.addSeminar(group, seminar));
+		} finally {
+			locks.unlockGroup(group);
+		}
 	}
 	
 	/**
@@ -44,9 +53,15 @@ public class SeminarCoordinatorController {
 	 * @throws DPMSystemException
 	 */
 	public void removeSeminar(Seminar seminar) throws DPMSystemException {
-		group.removeSeminar(seminar);
-		dataStore.notifyViews();
-		dataStore.saveData(dataStore.getFile());
+		GroupLocks locks = dataStore.getGroupLocks();
+		locks.lockGroup(group);
+		try {
+			group.removeSeminar(seminar);
+			dataStore.notifyViews();
+			dataStore.persist(JournalRecord.removeSeminar(group, seminar));
+		} finally {
+			locks.unlockGroup(group);
+		}
 	}
 	
 	/**
@@ -60,52 +75,92 @@ public class SeminarCoordinatorController {
 	 */
 	public void editSeminarDetails(Seminar seminar, LocalDateTime dateTime, String location, String topic)
 			throws DPMSystemException {
-		boolean edited = false;
-		for (Seminar s : group.getSeminarList()) {
-			if (s.equals(seminar)) {
-				s.setDateTime(dateTime);
-				s.setLocation(location);
-				s.setTopic(topic);
-				edited = true;
-			}
+		editSeminarDetails(seminar, ANY_VERSION, dateTime, location, topic);
+	}
+	
+	/**
+	 * Replaces the seminar details with those given as parameters, provided the seminar is still at the
+	 * given version. A stale version is refused at once, without waiting for the group's lock.
+	 * 
+	 * @param seminar
+	 * @param version Modification count of the seminar when it was read.
+	 * @param dateTime
+	 * @param location
+	 * @param topic
+	 * @throws ConcurrentEditException If the seminar has been changed since it was read.
+	 * @throws DPMSystemException If seminar is not listed.
+	 */
+	public void editSeminarDetails(Seminar seminar, long version, LocalDateTime dateTime, String location,
+			String topic) throws DPMSystemException {
+		if (version != ANY_VERSION) {
+			seminar.checkVersion(version);
 		}
 		
-		if (!edited) {
-			throw new DPMSystemException("Seminar not in list.");
-		}
+		GroupLocks locks = dataStore.getGroupLocks();
+		locks.lockGroup(group);
+		try {
+			LocalDateTime oldDateTime = seminar.getDateTime();
+			String oldTopic = seminar.getTopic();
+			Seminar edited = null;
+			for (Seminar s : group.getSeminarList()) {
+				if (s.equals(seminar)) {
+					if (version != ANY_VERSION) {
+						s.checkVersion(version);
+					}
+					s.setDateTime(dateTime);
+					s.setLocation(location);
+					s.setTopic(topic);
+					edited = s;
+				}
+			}
+		
+			if (edited == null) {
+				throw new DPMSystemException("Seminar not in list.");
+			}
 
-		dataStore.notifyViews();
-		dataStore.saveData(dataStore.getFile());
+			dataStore.notifyViews();
+			dataStore.persist(JournalRecord.editSeminar(group, oldDateTime, oldTopic, edited));
+		} finally {
+			locks.unlockGroup(group);
+		}
 	}
 	
-	//Fills monthly publication list with publications authored by members of the group in the last 30 days.
-	private void fillPublicationList() {
-		for (Publication p : dataStore.getPublicationList()) {
-			if (p.getGroupID() == group.getGroupID() && 
-					p.getPublicationDate().isAfter(LocalDate.now().minusDays(30))) {
-				lastMonthsPublications.add(p);
-			}
-		}
+	//Returns the publications authored by members of the group in the last 30 days.
+	private List<Publication> fillPublicationList() {
+		return dataStore.getPublicationsBetween(LocalDate.now().minusDays(29), LocalDate.MAX, group.getGroupID());
 	}
 	
-	//Fills email list with email addresses of all group members.
-	private void fillEmailList() {
+	//Returns the email addresses of all group members.
+	private ArrayList<String> fillEmailList() {
+		ArrayList<String> memberEmailList = new ArrayList<String>();
 		for (GroupMember m : group.getMembers()) {
 			memberEmailList.add(m.getEmailAddress());
 		}
+		return memberEmailList;
 	}
 	
 	/**
 	 * Publishes seminar details via email to members of research group, along with a list of publications
-	 * authored in the last 30 days by members of the group.
+	 * authored in the last 30 days by members of the group. The group is locked only while the seminar
+	 * and member list are read, not while the email is sent.
 	 * 
 	 * @param seminar
 	 * @throws DPMSystemException
 	 */
 	public void publishSeminar(Seminar seminar) throws DPMSystemException {
-		if (group.getSeminarList().contains(seminar) && seminar.getDateTime().isAfter(LocalDateTime.now())) {
-			fillPublicationList();
-			fillEmailList();
+		GroupLocks locks = dataStore.getGroupLocks();
+		boolean listed;
+		ArrayList<String> memberEmailList;
+		locks.lockGroup(group);
+		try {
+			listed = group.getSeminarList().contains(seminar);
+			memberEmailList = fillEmailList();
+		} finally {
+			locks.unlockGroup(group);
+		}
+		
+		if (listed && seminar.getDateTime().isAfter(LocalDateTime.now())) {
+			List<Publication> lastMonthsPublications = fillPublicationList();
 			String message = new String("Hello,\nThis week's seminar on the topic of: " + seminar.getTopic() + 
 					", is in " + seminar.getLocation() + " at " + seminar.getDateTime().getHour() + 
 					":" + seminar.getDateTime().getMinute() + " on " + seminar.getDateTime().getDayOfWeek() + 
@@ -3,9 +3,12 @@ package control;
 import model.AcademicStaff;
 import model.DPMSystemException;
 import model.DataStorage;
+import model.GroupLocks;
+import model.JournalRecord;
 import model.ResearchGroup;
 import model.ResearchStudent;
 import model.SystemAdmin;
+import model.Transaction;
 
 public class SystemAdminController {
 	
@@ -36,49 +39,55 @@ public class SystemAdminController {
 	}
 	
 	/**
-	 * Registers a new staff member with their research group and the system.
+	 * Registers a new staff member with their research group and the system. Both are changed in one
+	 * transaction, so neither is changed if the other cannot be.
 	 * 
 	 * @param staffMember
 	 * @throws DPMSystemException If their group is not listed.
 	 */
 	public void registerStaffMember(AcademicStaff staffMember) throws DPMSystemException {
-		boolean registered = false;
-		for (ResearchGroup g : dataStore.getResearchGroupList()) {
-			if (g.equals(staffMember.getGroup())) {
-				dataStore.addAcademicStaff(staffMember);
-				g.addMember(staffMember);
-				registered = true;
-			}
-		}
-		
-		if (!registered) {
+		ResearchGroup group = staffMember.getGroup();
+		if (group == null) {
 			throw new DPMSystemException("Group not listed.");
 		}
 		
-		dataStore.saveData(dataStore.getFile());
+		GroupLocks locks = dataStore.getGroupLocks();
+		locks.lockGroup(group);
+		try (Transaction transaction = dataStore.beginTransaction()) {
+			ResearchGroup listed = getListedGroup(group);
+			transaction.apply(() -> dataStore.addAcademicStaff(staffMember),
+					() -> dataStore.removeAcademicStaff(staffMember));
+			transaction.apply(() -> listed.addMember(staffMember), () -> listed.removeMember(staffMember));
+			transaction.commit(JournalRecord.addStaff(staffMember));
+		} finally {
+			locks.unlockGroup(group);
+		}
 	}
 	
 	/**
-	 * Removes a staff member from their research group and the system.
+	 * Removes a staff member from their research group and the system. Both are changed in one
+	 * transaction, so neither is changed if the other cannot be.
 	 * 
 	 * @param staffMember
 	 * @throws DPMSystemException If their group is not listed.
 	 */
 	public void removeStaffMember(AcademicStaff staffMember) throws DPMSystemException {
-		boolean removed = false;
-		for (ResearchGroup g : dataStore.getResearchGroupList()) {
-			if (g.equals(staffMember.getGroup())) {
-				dataStore.removeAcademicStaff(staffMember);
-				g.removeMember(staffMember);
-				removed = true;
-			}
-		}
-		
-		if (!removed) {
+		ResearchGroup group = staffMember.getGroup();
+		if (group == null) {
 			throw new DPMSystemException("Group not listed.");
 		}
 		
-		dataStore.saveData(dataStore.getFile());
+		GroupLocks locks = dataStore.getGroupLocks();
+		locks.lockGroup(group);
+		try (Transaction transaction = dataStore.beginTransaction()) {
+			ResearchGroup listed = getListedGroup(group);
+			transaction.apply(() -> dataStore.removeAcademicStaff(staffMember),
+					() -> dataStore.addAcademicStaff(staffMember));
+			transaction.apply(() -> listed.removeMember(staffMember), () -> listed.addMember(staffMember));
+			transaction.commit(JournalRecord.removeStaff(staffMember));
+		} finally {
+			locks.unlockGroup(group);
+		}
 	}
 	
 	/**
@@ -93,69 +102,87 @@ public class SystemAdminController {
 	 */
 	public void editStaffDetails(AcademicStaff staffMember, String name, String title, String emailAddress, 
 			String password) throws DPMSystemException {
-		boolean edited = false;
-		for (AcademicStaff a : dataStore.getAcademicStaffList()) {
-			if (a.equals(staffMember)) {
-				a.setName(name);
-				a.setTitle(title);
-				a.setEmailAddress(emailAddress);
-				a.setPassword(password);
-				edited = true;
-			}
-		}
-		
-		if (!edited) {
+		ResearchGroup group = staffMember.getGroup();
+		if (group == null) {
 			throw new DPMSystemException("Staff member not found.");
 		}
 		
-		dataStore.notifyViews();
-		dataStore.saveData(dataStore.getFile());
+		GroupLocks locks = dataStore.getGroupLocks();
+		locks.lockGroup(group);
+		try {
+			String oldEmailAddress = staffMember.getEmailAddress();
+			boolean edited = false;
+			for (AcademicStaff a : dataStore.getAcademicStaffList()) {
+				if (a.equals(staffMember)) {
+					a.setName(name);
+					a.setTitle(title);
+					a.setEmailAddress(emailAddress);
+					a.setPassword(password);
+					edited = true;
+				}
+			}
+		
+			if (!edited) {
+				throw new DPMSystemException("Staff member not found.");
+			}
+		
+			dataStore.notifyViews();
+			dataStore.persist(JournalRecord.editStaff(oldEmailAddress, staffMember));
+		} finally {
+			locks.unlockGroup(group);
+		}
 	}
 	
 	/**
-	 * Registers a new research student with their research group and the system.
+	 * Registers a new research student with their research group and the system. Both are changed in one
+	 * transaction, so neither is changed if the other cannot be.
 	 * 
 	 * @param student
 	 * @throws DPMSystemException If their group is not listed.
 	 */
 	public void registerResearchStudent(ResearchStudent student) throws DPMSystemException {
-		boolean registered = false;
-		for (ResearchGroup g : dataStore.getResearchGroupList()) {
-			if (g.equals(student.getGroup())) {
-				dataStore.addResearchStudent(student);
-				g.addMember(student);
-				registered = true;
-			}
-		}
-		
-		if (!registered) {
+		ResearchGroup group = student.getGroup();
+		if (group == null) {
 			throw new DPMSystemException("Group not listed.");
 		}
 		
-		dataStore.saveData(dataStore.getFile());
+		GroupLocks locks = dataStore.getGroupLocks();
+		locks.lockGroup(group);
+		try (Transaction transaction = dataStore.beginTransaction()) {
+			ResearchGroup listed = getListedGroup(group);
+			transaction.apply(() -> dataStore.addResearchStudent(student),
+					() -> dataStore.removeResearchStudent(student));
+			transaction.apply(() -> listed.addMember(student), () -> listed.removeMember(student));
+			transaction.commit(JournalRecord.addStudent(student));
+		} finally {
+			locks.unlockGroup(group);
+		}
 	}
 	
 	/**
-	 * Removes a research student from their research group and the system.
+	 * Removes a research student from their research group and the system. Both are changed in one
+	 * transaction, so neither is changed if the other cannot be.
 	 * 
 	 * @param student
 	 * @throws DPMSystemException If their group is not listed.
 	 */
 	public void removeResearchStudent(ResearchStudent student) throws DPMSystemException {
-		boolean removed = false;
-		for (ResearchGroup g : dataStore.getResearchGroupList()) {
-			if (g.equals(student.getGroup())) {
-				dataStore.removeResearchStudent(student);
-				g.removeMember(student);
-				removed = true;
-			}
-		}
-		
-		if (!removed) {
+		ResearchGroup group = student.getGroup();
+		if (group == null) {
 			throw new DPMSystemException("Group not listed.");
 		}
 		
-		dataStore.saveData(dataStore.getFile());
+		GroupLocks locks = dataStore.getGroupLocks();
+		locks.lockGroup(group);
+		try (Transaction transaction = dataStore.beginTransaction()) {
+			ResearchGroup listed = getListedGroup(group);
+			transaction.apply(() -> dataStore.removeResearchStudent(student),
+					() -> dataStore.addResearchStudent(student));
+			transaction.apply(() -> listed.removeMember(student), () -> listed.addMember(student));
+			transaction.commit(JournalRecord.removeStudent(student));
+		} finally {
+			locks.unlockGroup(group);
+		}
 	}
 	
 	/**
@@ -170,23 +197,35 @@ public class SystemAdminController {
 	 */
 	public void editStudentDetails(ResearchStudent student, String name, String title, String emailAddress,
 			String studentID) throws DPMSystemException {
-		boolean edited = false;
-		for (ResearchStudent r : dataStore.getResearchStudentList()) {
-			if (r.equals(student)) {
-				r.setName(name);
-				r.setTitle(title);
-				r.setEmailAddress(emailAddress);
-				r.setStudentID(studentID);
-				edited = true;
-			}
-		}
-		
-		if (!edited) {
+		ResearchGroup group = student.getGroup();
+		if (group == null) {
 			throw new DPMSystemException("Research student not found.");
 		}
 		
-		dataStore.notifyViews();
-		dataStore.saveData(dataStore.getFile());
+		GroupLocks locks = dataStore.getGroupLocks();
+		locks.lockGroup(group);
+		try {
+			String oldEmailAddress = student.getEmailAddress();
+			boolean edited = false;
+			for (ResearchStudent r : dataStore.getResearchStudentList()) {
+				if (r.equals(student)) {
+					r.setName(name);
+					r.setTitle(title);
+					r.setEmailAddress(emailAddress);
+					r.setStudentID(studentID);
+					edited = true;
+				}
+			}
+		
+			if (!edited) {
+				throw new DPMSystemException("Research student not found.");
+			}
+		
+			dataStore.notifyViews();
+			dataStore.persist(JournalRecord.editStudent(oldEmailAddress, student));
+		} finally {
+			locks.unlockGroup(group);
+		}
 	}
 	
 	/**
@@ -196,8 +235,14 @@ public class SystemAdminController {
 	 * @throws DPMSystemException
 	 */
 	public void registerResearchGroup(ResearchGroup group) throws DPMSystemException {
-		dataStore.addResearchGroup(group);
-		dataStore.saveData(dataStore.getFile());
+		GroupLocks locks = dataStore.getGroupLocks();
+		locks.lockDepartment();
+		try {
+			dataStore.addResearchGroup(group);
+			dataStore.persist(JournalRecord.addGroup(group));
+		} finally {
+			locks.unlockDepartment();
+		}
 	}
 	
 	/**
@@ -207,8 +252,14 @@ public class SystemAdminController {
 	 * @throws DPMSystemException
 	 */
 	public void removeResearchGroup(ResearchGroup group) throws DPMSystemException {
-		dataStore.removeResearchGroup(group);
-		dataStore.saveData(dataStore.getFile());
+		GroupLocks locks = dataStore.getGroupLocks();
+		locks.lockDepartment();
+		try {
+			dataStore.removeResearchGroup(group);
+			dataStore.persist(JournalRecord.removeGroup(group));
+		} finally {
+			locks.unlockDepartment();
+		}
 	}
 	
 	/**
@@ -220,21 +271,28 @@ public class SystemAdminController {
 	 * @throws DPMSystemException If research group is not found.
 	 */
 	public void editResearchGroup(ResearchGroup group, String name, int groupID) throws DPMSystemException {
-		boolean edited = false;
-		for (ResearchGroup g : dataStore.getResearchGroupList()) {
-			if (g.equals(group)) {
-				g.setName(name);
-				g.setGroupID(groupID);
-				edited = true;
+		GroupLocks locks = dataStore.getGroupLocks();
+		locks.lockDepartment();
+		try {
+			int oldGroupID = group.getGroupID();
+			boolean edited = false;
+			for (ResearchGroup g : dataStore.getResearchGroupList()) {
+				if (g.equals(group)) {
+					g.setName(name);
+					g.setGroupID(groupID);
+					edited = true;
+				}
 			}
-		}
 		
-		if (!edited) {
-			throw new DPMSystemException("Research group not found.");
-		}
+			if (!edited) {
+				throw new DPMSystemException("Research group not found.");
+			}
 		
-		dataStore.notifyViews();
-		dataStore.saveData(dataStore.getFile());
+			dataStore.notifyViews();
+			dataStore.persist(JournalRecord.editGroup(oldGroupID, group));
+		} finally {
+			locks.unlockDepartment();
+		}
 	}
 	
 	/**
@@ -244,20 +302,41 @@ public class SystemAdminController {
 	 * @throws DPMSystemException If staff member is not found.
 	 */
 	public void makeSeminarCoordinator(AcademicStaff staffMember) throws DPMSystemException {
-		boolean setCoord = false;
-		for (AcademicStaff a : dataStore.getAcademicStaffList()) {
-			if (a.equals(staffMember)) {
-				a.setCoordinator(true);
-				a.getGroup().setSeminarCoordinator(a);
-				setCoord = true;
-			}
-		}
-		
-		if (!setCoord) {
+		ResearchGroup group = staffMember.getGroup();
+		if (group == null) {
 			throw new DPMSystemException("Staff member not found.");
 		}
 		
-		dataStore.notifyViews();
-		dataStore.saveData(dataStore.getFile());
+		GroupLocks locks = dataStore.getGroupLocks();
+		locks.lockGroup(group);
+		try {
+			boolean setCoord = false;
+			for (AcademicStaff a : dataStore.getAcademicStaffList()) {
+				if (a.equals(staffMember)) {
+					a.setCoordinator(true);
+					a.getGroup().setSeminarCoordinator(a);
+					setCoord = true;
+				}
+			}
+		
+			if (!setCoord) {
+				throw new DPMSystemException("Staff member not found.");
+			}
+		
+			dataStore.notifyViews();
+			dataStore.persist(JournalRecord.makeCoordinator(staffMember));
+		} finally {
+			locks.unlockGroup(group);
+		}
+	}
+	
+	//Returns the listed research group equal to the given one.
+	private ResearchGroup getListedGroup(ResearchGroup group) throws DPMSystemException {
+		for (ResearchGroup g : dataStore.getResearchGroupList()) {
+			if (g.equals(group)) {
+				return g;
+			}
+		}
+		throw new DPMSystemException("Group not listed.");
 	}
 }
@@ -1,10 +1,19 @@
 package control;
 
 import java.util.ArrayList;
+import java.util.List;
 
+import model.AuthorIndex;
 import model.DPMSystemException;
+import model.CompletionIndex;
 import model.DataStorage;
+import model.FacetCounts;
+import model.FullTextIndex;
+import model.FuzzyAuthorIndex;
 import model.Publication;
+import model.PublicationPage;
+import model.PublicationQuery;
+import model.SearchResultCache;
 
 /**
  * The UserController class acts provides methods for the UserView class to
@@ -56,40 +65,99 @@ public class UserController {
 	 * @throws DPMSystemException If no publication title matches search.
 	 */
 	public Publication searchByTitle(String title) throws DPMSystemException {
-		int index = -1;
+		Publication publication = dataStore.getPublicationByTitle(title);
 		
-		for (int i=0; i < dataStore.getPublicationList().size(); i++) {
-			if (dataStore.getPublicationList().get(i).getTitle().equals(title)) {
-				index = i;
-				break;
-			}
-		}
-		
-		if (index == -1 ) {
+		if (publication == null) {
 			throw new DPMSystemException("No search result found.");
 		}
 		else {
-			return dataStore.getPublicationList().get(index);
+			return publication;
 		}
 	}
 	
 	/**
-	 * Searches publication list for publications with the given author.
+	 * Searches publication list for publications with the given author, ignoring case and
+	 * differences in whitespace. Results are cached until a publication by the author changes.
 	 * 
 	 * @param author
 	 * @return Returns a list of publications by that author.
 	 * @throws DPMSystemException If no publications by that author were found.
 	 */
 	public ArrayList<Publication> searchByAuthor(String author) throws DPMSystemException {
-		ArrayList<Publication> pubList = new ArrayList<Publication>();
+		SearchResultCache cache = dataStore.getSearchResultCache();
+		String key = "author\u0000" + AuthorIndex.normalize(author);
+		long generation = cache.getGeneration();
+		List<Publication> result = cache.get(key);
+		if (result == null) {
+			result = dataStore.getPublicationsByAuthor(author);
+			cache.put(key, result, generation, SearchResultCache.authorTag(author));
+		}
+		ArrayList<Publication> pubList = new ArrayList<Publication>(result);
+		
+		if (pubList.isEmpty()) {
+			throw new DPMSystemException("No search result found.");
+		}
+		else {
+			return pubList;
+		}
+	}
+	
+	/**
+	 * Searches publication list for publications with the given author a page at a time, ordered by
+	 * date then publicationID. Each page returns the cursor from which the next is read.
+	 * 
+	 * @param author
+	 * @param cursor Cursor returned with the previous page, or null for the first page.
+	 * @param pageSize Maximum number of publications on the page.
+	 * @return Returns a page of publications by that author.
+	 * @throws DPMSystemException If the cursor is invalid, or the first page is empty.
+	 */
+	public PublicationPage searchByAuthor(String author, String cursor, int pageSize) throws DPMSystemException {
+		PublicationPage page = dataStore.getPublicationsByAuthor(author, cursor, pageSize);
 		
-		for (Publication p : dataStore.getPublicationList()) {
-			for (String a : p.getAuthorNames()) {
-				if (a.equals(author)) {
-					pubList.add(p);
-					break;
+		if (cursor == null && page.getPublications().isEmpty()) {
+			throw new DPMSystemException("No search result found.");
+		}
+		else {
+			return page;
+		}
+	}
+	
+	/**
+	 * Searches publication list for publications by authors whose names are close to the given name,
+	 * allowing for misspellings. Publications by the closest matching authors come first.
+	 * 
+	 * @param author
+	 * @param maxDistance Greatest number of characters by which a name may differ from the one given.
+	 * @param maxResults Maximum number of publications returned.
+	 * @return Returns a list of publications by matching authors.
+	 * @throws DPMSystemException If no publications by a matching author were found.
+	 */
+	public ArrayList<Publication> searchByAuthorFuzzy(String author, int maxDistance, int maxResults) 
+			throws DPMSystemException {
+		SearchResultCache cache = dataStore.getSearchResultCache();
+		String key = "fuzzy\u0000" + maxDistance + "\u0000" + maxResults + "\u0000" + AuthorIndex.normalize(author);
+		long generation = cache.getGeneration();
+		List<Publication> result = cache.get(key);
+		ArrayList<Publication> pubList;
+		
+		if (result != null) {
+			pubList = new ArrayList<Publication>(result);
+		}
+		else {
+			pubList = new ArrayList<Publication>();
+			for (FuzzyAuthorIndex.Match m : dataStore.getFuzzyAuthorIndex().search(author, maxDistance, maxResults)) {
+				for (Publication p : dataStore.getPublicationsByAuthor(m.getName())) {
+					if (pubList.size() == maxResults) {
+						break;
+					}
+					if (!pubList.contains(p)) {
+						pubList.add(p);
+					}
 				}
 			}
+			//Any new or renamed author may be close enough to match, so the result depends on every publication.
+			cache.put(key, pubList, generation, SearchResultCache.ALL_PUBLICATIONS);
 		}
 		
 		if (pubList.isEmpty()) {
@@ -100,6 +168,62 @@ public class UserController {
 		}
 	}
 	
+	/**
+	 * Searches the titles and abstracts of publications for the given words, returning the publications
+	 * that contain them ranked by relevance. Every word must appear, unless words are joined by OR.
+	 * Phrases can be quoted, words excluded with NOT or a leading minus sign, and parts of the query
+	 * grouped with parentheses.
+	 * 
+	 * @param query
+	 * @param maxResults Maximum number of publications returned.
+	 * @return Returns a list of matching publications, the most relevant first.
+	 * @throws DPMSystemException If the query is malformed, or no publications match it.
+	 */
+	public ArrayList<Publication> searchFullText(String query, int maxResults) throws DPMSystemException {
+		SearchResultCache cache = dataStore.getSearchResultCache();
+		String key = "text\u0000" + maxResults + "\u0000" + query;
+		long generation = cache.getGeneration();
+		List<Publication> result = cache.get(key);
+		ArrayList<Publication> pubList;
+		
+		if (result != null) {
+			pubList = new ArrayList<Publication>(result);
+		}
+		else {
+			List<FullTextIndex.SearchHit> hits = dataStore.getFullTextIndex().search(query, maxResults);
+			pubList = new ArrayList<Publication>(hits.size());
+			for (FullTextIndex.SearchHit h : hits) {
+				pubList.add(h.getPublication());
+			}
+			//Relevance depends on how common each word is across every publication.
+			cache.put(key, pubList, generation, SearchResultCache.ALL_PUBLICATIONS);
+		}
+		
+		if (pubList.isEmpty()) {
+			throw new DPMSystemException("No search result found.");
+		}
+		else {
+			return pubList;
+		}
+	}
+	
+	/**
+	 * Suggests titles and author names beginning with what has been typed so far, those belonging
+	 * to the most publications first.
+	 * 
+	 * @param prefix Text typed so far.
+	 * @param maxResults Maximum number of suggestions.
+	 * @return Returns a list of suggestions, empty if there are none.
+	 */
+	public ArrayList<String> suggest(String prefix, int maxResults) {
+		ArrayList<String> suggestions = new ArrayList<String>();
+		
+		for (CompletionIndex.Completion c : dataStore.getCompletionIndex().complete(prefix, maxResults)) {
+			suggestions.add(c.getText());
+		}
+		return suggestions;
+	}
+	
 	/**
 	 * Searches publication list for publications of the given type.
 	 * 
@@ -108,13 +232,15 @@ public class UserController {
 	 * @throws DPMSystemException If no publications of the given type are found.
 	 */
 	public ArrayList<Publication> searchByType(Publication.publicationType type) throws DPMSystemException {
-		ArrayList<Publication> pubList = new ArrayList<Publication>();
-		
-		for (Publication p : dataStore.getPublicationList()) {
-			if (p.getPublicationType().equals(type)) {
-				pubList.add(p);
-			}
+		SearchResultCache cache = dataStore.getSearchResultCache();
+		String key = "type\u0000" + type.name();
+		long generation = cache.getGeneration();
+		List<Publication> result = cache.get(key);
+		if (result == null) {
+			result = new ArrayList<Publication>(dataStore.getPublicationsByType(type));
+			cache.put(key, result, generation, SearchResultCache.typeTag(type));
 		}
+		ArrayList<Publication> pubList = new ArrayList<Publication>(result);
 		
 		if (pubList.isEmpty()) {
 			throw new DPMSystemException("No publications of that type found.");
@@ -123,4 +249,48 @@ public class UserController {
 			return pubList;
 		}
 	}
+	
+	/**
+	 * Searches publication list for publications of the given type a page at a time, ordered by date
+	 * then publicationID. Each page returns the cursor from which the next is read.
+	 * 
+	 * @param type
+	 * @param cursor Cursor returned with the previous page, or null for the first page.
+	 * @param pageSize Maximum number of publications on the page.
+	 * @return Returns a page of publications of the given type.
+	 * @throws DPMSystemException If the cursor is invalid, or the first page is empty.
+	 */
+	public PublicationPage searchByType(Publication.publicationType type, String cursor, int pageSize) 
+			throws DPMSystemException {
+		PublicationPage page = dataStore.getPublicationsByType(type, cursor, pageSize);
+		
+		if (cursor == null && page.getPublications().isEmpty()) {
+			throw new DPMSystemException("No publications of that type found.");
+		}
+		else {
+			return page;
+		}
+	}
+	
+	/**
+	 * Returns the number of publications of each type, from each year, in each research group and by
+	 * each author. The counts are kept up to date as publications change, so reading them does not
+	 * go through the publication list.
+	 * 
+	 * @return Returns the facet counts.
+	 */
+	public FacetCounts getFacetCounts() {
+		return dataStore.getFacetCounts();
+	}
+	
+	/**
+	 * Returns a new query over the publication list. Conditions on type, author, group, date range,
+	 * submitting member of staff and title are chained onto the query, and the matching publications
+	 * read from its stream, which is empty rather than an error if nothing matches.
+	 * 
+	 * @return Returns a query matching every publication until conditions are added.
+	 */
+	public PublicationQuery newQuery() {
+		return dataStore.query();
+	}
 }
@@ -0,0 +1,247 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The AbstractCache class lets publication abstracts stay on disk until they are needed. When the data
+ * store is loaded from a binary snapshot, each publication records only where its abstract lies in the
+ * snapshot file, and the abstract is read the first time it is asked for. Abstracts that have been read
+ * are kept in a cache bounded by their total number of characters, the least recently used being dropped
+ * once the bound is exceeded.
+ *
+ * Each snapshot file is opened when it is loaded and kept open for as long as a publication refers to it,
+ * so a file that has since been renamed or deleted by a checkpoint can still be read from.
+ *
+ */
+public class AbstractCache {
+	/**
+	 * An open snapshot file that abstracts are read from.
+	 */
+	static class Source {
+		private File file;
+		private FileChannel channel;
+
+		private Source(File file, FileChannel channel) {
+			this.file = file;
+			this.channel = channel;
+		}
+
+		public File getFile() {
+			return file;
+		}
+	}
+
+	/**
+	 * The position of an abstract's UTF-8 bytes within a snapshot file.
+	 */
+	static class Location {
+		private AbstractCache cache;
+		private Source source;
+		private long offset;
+		private int length;
+
+		private Location(AbstractCache cache, Source source, long offset, int length) {
+			this.cache = cache;
+			this.source = source;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * Returns the abstract, reading it from the snapshot file if it is not cached.
+		 *
+		 * @return Abstract.
+		 * @throws UncheckedIOException If the snapshot file cannot be read.
+		 */
+		public String load() {
+			return cache.load(this);
+		}
+	}
+
+	private long capacity;
+	private long size;
+	private LinkedHashMap<Location, String> entries;
+	private ArrayList<Source> sources;
+	private long hits;
+	private long misses;
+
+	/**
+	 * @param capacity Total number of characters of abstracts kept in memory.
+	 */
+	public AbstractCache(long capacity) {
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<Location, String>(16, 0.75f, true);
+		this.sources = new ArrayList<Source>();
+	}
+
+	/**
+	 * Opens a snapshot file to read abstracts from.
+	 *
+	 * @param file
+	 * @return Source for the file.
+	 * @throws IOException If the file cannot be opened.
+	 */
+	synchronized Source open(File file) throws IOException {
+		Source source = new Source(file, FileChannel.open(file.toPath(), StandardOpenOption.READ));
+		sources.add(source);
+		return source;
+	}
+
+	/**
+	 * Makes the publication read its abstract from the given position of a snapshot file. If the
+	 * publication's abstract is already in memory, it is carried over to the cache.
+	 *
+	 * @param p
+	 * @param source
+	 * @param offset Position of the abstract's first byte.
+	 * @param length Length of the abstract in bytes.
+	 */
+	synchronized void bind(Publication p, Source source, long offset, int length) {
+		Location location = new Location(this, source, offset, length);
+		String loaded = p.getLoadedAbstract();
+		if (loaded != null) {
+			put(location, loaded);
+		}
+		p.setAbstractLocation(location);
+	}
+
+	private synchronized String load(Location location) {
+		String aBstract = entries.get(location);
+		if (aBstract != null) {
+			hits++;
+			return aBstract;
+		}
+		misses++;
+
+		try {
+			ByteBuffer bytes = ByteBuffer.allocate(location.length);
+			while (bytes.hasRemaining()) {
+				if (location.source.channel.read(bytes, location.offset + bytes.position()) < 0) {
+					throw new IOException("Unexpected end of " + location.source.file.getName() + ".");
+				}
+			}
+			aBstract = new String(bytes.array(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read abstract: " + e.getMessage(), e);
+		}
+		put(location, aBstract);
+		return aBstract;
+	}
+
+	private void put(Location location, String aBstract) {
+		String previous = entries.put(location, aBstract);
+		if (previous != null) {
+			size -= previous.length();
+		}
+		size += aBstract.length();
+		evict();
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<Location, String>> it = entries.entrySet().iterator();
+		while (size > capacity && it.hasNext()) {
+			size -= it.next().getValue().length();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Closes every snapshot file that none of the given publications read their abstract from, and drops
+	 * the cached abstracts read from those files.
+	 *
+	 * @param publications Every publication in the data store.
+	 */
+	synchronized void closeUnused(Collection<Publication> publications) {
+		IdentityHashMap<Source, Boolean> used = new IdentityHashMap<Source, Boolean>();
+		for (Publication p : publications) {
+			if (p.getAbstractLocation() != null) {
+				used.put(p.getAbstractLocation().source, Boolean.TRUE);
+			}
+		}
+
+		Iterator<Map.Entry<Location, String>> cached = entries.entrySet().iterator();
+		while (cached.hasNext()) {
+			Map.Entry<Location, String> entry = cached.next();
+			if (!used.containsKey(entry.getKey().source)) {
+				size -= entry.getValue().length();
+				cached.remove();
+			}
+		}
+
+		Iterator<Source> it = sources.iterator();
+		while (it.hasNext()) {
+			Source source = it.next();
+			if (!used.containsKey(source)) {
+				close(source);
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Closes every snapshot file and empties the cache. Publications still referring to the files can
+	 * no longer read their abstracts.
+	 */
+	public synchronized void close() {
+		for (Source source : sources) {
+			close(source);
+		}
+		sources.clear();
+		entries.clear();
+		size = 0;
+	}
+
+	private void close(Source source) {
+		try {
+			source.channel.close();
+		} catch (IOException e) {
+			System.out.println("Could not close " + source.file.getName() + ": " + e.getMessage());
+		}
+	}
+
+	public synchronized long getCapacity() {
+		return capacity;
+	}
+
+	public synchronized void setCapacity(long capacity) {
+		this.capacity = capacity;
+		evict();
+	}
+
+	/**
+	 * Returns the total number of characters of the abstracts held in memory.
+	 *
+	 * @return Size in characters.
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	public synchronized int getOpenFileCount() {
+		return sources.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+}
@@ -21,6 +21,7 @@ public class AcademicStaff extends GroupMember {
 	
 	public void setPassword(String password) {
 		this.password = password;
+		markModified();
 	}
 	
 	public Boolean coordinator() {
@@ -33,6 +34,7 @@ public class AcademicStaff extends GroupMember {
 		}
 		
 		this.isCoordinator = value;
+		markModified();
 	}
 	
 	/**
@@ -47,6 +49,7 @@ public class AcademicStaff extends GroupMember {
 		}
 		else {
 			publicationList.add(publication);
+			markModified();
 		}
 	}
 	
@@ -59,6 +62,7 @@ public class AcademicStaff extends GroupMember {
 	public void removePublication(Publication publication) throws DPMSystemException {
 		if (publicationList.contains(publication)) {
 			publicationList.remove(publication);
+			markModified();
 		}
 		else {
 			throw new DPMSystemException("Publication not in publication list.");
@@ -0,0 +1,142 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The AuthorIndex class is an inverted index from author names to the publications listing them as an
+ * author. Names are normalized before being used as keys, ignoring case and differences in whitespace, so
+ * "J.  Smith" and "j. smith" find the same publications. The keys each publication was indexed under are
+ * remembered, so it is removed correctly even if its author list was altered in place. Each author's
+ * publications are kept sorted by date and publicationID, so they can be read a page at a time.
+ *
+ */
+public class AuthorIndex implements PublicationIndex {
+	private HashMap<String, TreeSet<Publication>> publications;
+	private IdentityHashMap<Publication, String[]> indexedKeys;
+
+	public AuthorIndex() {
+		publications = new HashMap<String, TreeSet<Publication>>();
+		indexedKeys = new IdentityHashMap<Publication, String[]>();
+	}
+
+	/**
+	 * Returns the key an author name is indexed under, in lower case with leading and trailing whitespace
+	 * removed and every other run of whitespace replaced by a single space.
+	 *
+	 * @param author
+	 * @return Normalized name.
+	 */
+	public static String normalize(String author) {
+		StringBuilder key = new StringBuilder(author.length());
+		boolean space = false;
+		for (int i=0; i < author.length(); i++) {
+			char c = author.charAt(i);
+			if (Character.isWhitespace(c)) {
+				space = key.length() > 0;
+			} else {
+				if (space) {
+					key.append(' ');
+					space = false;
+				}
+				key.append(Character.toLowerCase(c));
+			}
+		}
+		return key.toString();
+	}
+
+	@Override
+	public void add(Publication publication) {
+		if (publication.getAuthorNames() == null) {
+			return;
+		}
+
+		LinkedHashSet<String> keys = new LinkedHashSet<String>();
+		for (String author : publication.getAuthorNames()) {
+			keys.add(normalize(author));
+		}
+
+		for (String key : keys) {
+			TreeSet<Publication> set = publications.get(key);
+			if (set == null) {
+				set = new TreeSet<Publication>(PublicationPage.ORDER);
+				publications.put(key, set);
+			}
+			set.add(publication);
+		}
+		indexedKeys.put(publication, keys.toArray(new String[keys.size()]));
+	}
+
+	@Override
+	public void remove(Publication publication) {
+		String[] keys = indexedKeys.remove(publication);
+		if (keys == null) {
+			return;
+		}
+
+		for (String key : keys) {
+			TreeSet<Publication> set = publications.get(key);
+			set.remove(publication);
+			if (set.isEmpty()) {
+				publications.remove(key);
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+		publications.clear();
+		indexedKeys.clear();
+	}
+
+	/**
+	 * Returns the publications listing the given author.
+	 *
+	 * @param author Author name, normalized before it is looked up.
+	 * @return Publications, in date then publicationID order.
+	 */
+	public List<Publication> get(String author) {
+		TreeSet<Publication> set = publications.get(normalize(author));
+		return set == null ? Collections.<Publication>emptyList()
+				: Collections.unmodifiableList(new ArrayList<Publication>(set));
+	}
+
+	/**
+	 * Returns the number of publications listing the given author.
+	 *
+	 * @param author Author name, normalized before it is looked up.
+	 * @return Number of publications.
+	 */
+	public int count(String author) {
+		TreeSet<Publication> set = publications.get(normalize(author));
+		return set == null ? 0 : set.size();
+	}
+
+	/**
+	 * Returns a page of the publications listing the given author.
+	 *
+	 * @param author Author name, normalized before it is looked up.
+	 * @param cursor Cursor returned with the previous page, or null for the first page.
+	 * @param limit Maximum number of publications on the page.
+	 * @return The page.
+	 * @throws DPMSystemException If the cursor is malformed or the limit is not positive.
+	 */
+	public PublicationPage page(String author, String cursor, int limit) throws DPMSystemException {
+		TreeSet<Publication> set = publications.get(normalize(author));
+		return PublicationPage.read(set == null ? Collections.<Publication>emptyNavigableSet() : set, cursor, limit);
+	}
+
+	/**
+	 * Returns the number of distinct authors in the index.
+	 *
+	 * @return Number of authors.
+	 */
+	public int size() {
+		return publications.size();
+	}
+}
@@ -0,0 +1,363 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * The BinarySnapshotReader class rebuilds a data store from a snapshot written by BinarySnapshotWriter.
+ * The file is memory-mapped rather than read through a stream, and its checksum is verified before
+ * anything is rebuilt, so a damaged snapshot is rejected without altering the data store.
+ *
+ * Reading is done in two parts. parse rebuilds the groups, members, publications and seminars and holds
+ * them in the reader, touching no data store, so that the shards of a sharded snapshot can be parsed in
+ * parallel; addTo then adds them to a data store.
+ *
+ */
+class BinarySnapshotReader {
+	private File file;
+	private AbstractCache abstracts;
+	private AbstractCache.Source source;
+	private ByteBuffer buffer;
+	private String[] stringTable;
+	private byte[] scratch;
+	private short version;
+	private long journalSequence;
+	private SystemAdmin systemAdmin;
+	private ArrayList<ResearchGroup> groupList = new ArrayList<ResearchGroup>();
+	private ArrayList<AcademicStaff> staffList = new ArrayList<AcademicStaff>();
+	private ArrayList<ResearchStudent> studentList = new ArrayList<ResearchStudent>();
+	private ArrayList<Publication> publicationList = new ArrayList<Publication>();
+	private LinkedHashMap<Integer, String> shards;
+	private int groupCount;
+	private int memberCount;
+	private int publicationCount;
+	private int seminarCount;
+
+	public BinarySnapshotReader(File file) {
+		this(file, null);
+	}
+
+	/**
+	 * @param file
+	 * @param abstracts Cache to leave publication abstracts in the file through, or null to read them
+	 * into memory.
+	 */
+	public BinarySnapshotReader(File file, AbstractCache abstracts) {
+		this.file = file;
+		this.abstracts = abstracts;
+		this.scratch = new byte[256];
+		this.shards = new LinkedHashMap<Integer, String>();
+	}
+
+	/**
+	 * Reads the sequence number of the last journal record contained in a snapshot from its header, without
+	 * verifying the rest of the file, so that snapshots can be ranked before one is loaded.
+	 *
+	 * @param file
+	 * @return Journal sequence number.
+	 * @throws IOException If the file is not a snapshot.
+	 */
+	static long readJournalSequence(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != BinarySnapshotWriter.MAGIC) {
+				throw new IOException("Not a snapshot file.");
+			}
+			in.readShort();
+			return in.readLong();
+		}
+	}
+
+	/**
+	 * Reads the snapshot into the given data store, which is expected to be empty.
+	 *
+	 * @param dataStore
+	 * @throws IOException If the file cannot be read, is not a snapshot, or fails its checksum.
+	 * @throws DPMSystemException Passed to it from the data store or the objects being rebuilt.
+	 */
+	public void read(DataStorage dataStore) throws IOException, DPMSystemException {
+		parse();
+		dataStore.setJournalSequence(journalSequence);
+		if (systemAdmin != null) {
+			dataStore.setSystemAdmin(systemAdmin);
+		}
+		addTo(dataStore);
+	}
+
+	/**
+	 * Parses the snapshot, holding what it contains in the reader until it is added to a data store.
+	 *
+	 * @throws IOException If the file cannot be read, is not a snapshot, or fails its checksum.
+	 * @throws DPMSystemException Passed to it from the objects being rebuilt.
+	 */
+	public void parse() throws IOException, DPMSystemException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < 6 + BinarySnapshotWriter.FOOTER_LENGTH || size > Integer.MAX_VALUE) {
+				throw new IOException("Not a snapshot file.");
+			}
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			buffer = mapped;
+		}
+
+		int footer = buffer.limit() - BinarySnapshotWriter.FOOTER_LENGTH;
+		long tableOffset = buffer.getLong(footer);
+		long checksum = buffer.getLong(footer + 8);
+		if (buffer.getInt(0) != BinarySnapshotWriter.MAGIC || buffer.getInt(footer + 16) != BinarySnapshotWriter.MAGIC) {
+			throw new IOException("Not a snapshot file.");
+		}
+		version = buffer.getShort(4);
+		if (version < 1 || version > BinarySnapshotWriter.VERSION) {
+			throw new IOException("Unsupported snapshot version " + version + ".");
+		}
+
+		CRC32 crc = new CRC32();
+		ByteBuffer covered = buffer.duplicate();
+		covered.position(0).limit(footer);
+		crc.update(covered);
+		if (crc.getValue() != checksum || tableOffset < 6 || tableOffset > footer) {
+			throw new IOException("Snapshot checksum does not match.");
+		}
+
+		readStringTable((int) tableOffset);
+		if (abstracts != null) {
+			source = abstracts.open(file);
+		}
+
+		buffer.position(6);
+		journalSequence = buffer.getLong();
+
+		if (buffer.get() != 0) {
+			String name = readShared();
+			String officeNumber = readShared();
+			String phoneNumber = readShared();
+			String email = readShared();
+			String password = readString();
+			systemAdmin = new SystemAdmin(name, officeNumber, phoneNumber, email, password);
+		}
+
+		int groups = buffer.getInt();
+		for (int i=0; i < groups; i++) {
+			readGroup();
+		}
+
+		if (version >= 2) {
+			int shardCount = buffer.getInt();
+			for (int i=0; i < shardCount; i++) {
+				int groupID = buffer.getInt();
+				shards.put(groupID, readString());
+			}
+		}
+	}
+
+	/**
+	 * Adds the research groups, members and publications parsed to the given data store, in the order
+	 * they were held in the snapshot. The journal sequence number and system administrator are left for
+	 * the caller to set.
+	 *
+	 * @param dataStore
+	 * @throws DPMSystemException Passed to it from the data store.
+	 */
+	public void addTo(DataStorage dataStore) throws DPMSystemException {
+		for (ResearchGroup g : groupList) {
+			dataStore.addResearchGroup(g);
+		}
+		for (AcademicStaff a : staffList) {
+			dataStore.addAcademicStaff(a);
+		}
+		for (ResearchStudent r : studentList) {
+			dataStore.addResearchStudent(r);
+		}
+		for (Publication p : publicationList) {
+			dataStore.addPublication(p);
+		}
+	}
+
+	/**
+	 * Returns the names of the shard files listed in the snapshot, keyed by group ID, in the
+	 * order the groups are held in the data store.
+	 *
+	 * @return Shard file names.
+	 */
+	public LinkedHashMap<Integer, String> getShards() {
+		return shards;
+	}
+
+	public int getGroupCount() {
+		return groupCount;
+	}
+
+	public int getMemberCount() {
+		return memberCount;
+	}
+
+	public int getPublicationCount() {
+		return publicationCount;
+	}
+
+	public int getSeminarCount() {
+		return seminarCount;
+	}
+
+	private void readStringTable(int offset) {
+		buffer.position(offset);
+		stringTable = new String[buffer.getInt()];
+		for (int i=0; i < stringTable.length; i++) {
+			stringTable[i] = readString();
+		}
+	}
+
+	private void readGroup() throws DPMSystemException {
+		int groupID = buffer.getInt();
+		ResearchGroup group = new ResearchGroup(readShared(), groupID);
+		String coordinatorEmail = readShared();
+		groupList.add(group);
+		groupCount++;
+
+		int members = buffer.getInt();
+		for (int i=0; i < members; i++) {
+			readMember(group);
+		}
+
+		if (coordinatorEmail != null) {
+			for (GroupMember g : group.getMembers()) {
+				if (g.getEmailAddress().equals(coordinatorEmail) && g instanceof AcademicStaff) {
+					group.setSeminarCoordinator((AcademicStaff) g);
+					break;
+				}
+			}
+		}
+
+		int seminars = buffer.getInt();
+		for (int i=0; i < seminars; i++) {
+			String topic = readString();
+			String location = readShared();
+			LocalDateTime dateTime = readDateTime();
+			group.addOldSeminar(new Seminar(dateTime, location, topic, group));
+			seminarCount++;
+		}
+	}
+
+	private void readMember(ResearchGroup group) throws DPMSystemException {
+		GroupMember.memberType type = GroupMember.memberType.values()[buffer.get()];
+		String name = readShared();
+		String title = readShared();
+		String email = readShared();
+
+		if (type == GroupMember.memberType.STUDENT) {
+			ResearchStudent student = new ResearchStudent(name, title, group, email, type, readString());
+			group.addMember(student);
+			studentList.add(student);
+		} else {
+			AcademicStaff staff = new AcademicStaff(name, title, group, email, type, readString());
+			boolean isCoordinator = buffer.get() != 0;
+			group.addMember(staff);
+			staffList.add(staff);
+
+			if (isCoordinator) {
+				staff.setCoordinator(true);
+			}
+
+			int publications = buffer.getInt();
+			for (int i=0; i < publications; i++) {
+				Publication p = readPublication();
+				staff.addPublication(p);
+				publicationList.add(p);
+			}
+		}
+		memberCount++;
+	}
+
+	private Publication readPublication() {
+		Publication.publicationType type = Publication.publicationType.values()[buffer.get()];
+		String publicationID = readString();
+		String title = readString();
+
+		int authors = buffer.getInt();
+		ArrayList<String> authorNames = new ArrayList<String>(authors);
+		for (int i=0; i < authors; i++) {
+			authorNames.add(readShared());
+		}
+
+		//An abstract left in the file is skipped over, and bound to the publication once it is built.
+		String aBstract = null;
+		int abstractOffset = buffer.position() + 4;
+		int abstractLength = -1;
+		if (source != null) {
+			abstractLength = buffer.getInt();
+			buffer.position(abstractOffset + Math.max(0, abstractLength));
+		} else {
+			aBstract = readString();
+		}
+		int groupID = buffer.getInt();
+		String staffEmail = readShared();
+		LocalDate publicationDate = readDate();
+		publicationCount++;
+
+		Publication p;
+		switch (type) {
+		case JOURNALPAPER:
+			String journalName = readShared();
+			p = new JournalPaper(publicationID, title, authorNames, aBstract, groupID, staffEmail, type,
+					publicationDate, journalName, buffer.getInt());
+			break;
+		case CONFERENCEPAPER:
+			String conferenceName = readShared();
+			String conferenceLocation = readShared();
+			p = new ConferencePaper(publicationID, title, authorNames, aBstract, groupID, staffEmail, type,
+					publicationDate, conferenceName, conferenceLocation, readDate());
+			break;
+		default:
+			String iSBN = readString();
+			p = new Book(publicationID, title, authorNames, aBstract, groupID, staffEmail, type,
+					publicationDate, iSBN, readShared());
+			break;
+		}
+
+		if (abstractLength >= 0) {
+			abstracts.bind(p, source, abstractOffset, abstractLength);
+		}
+		return p;
+	}
+
+	private String readString() {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		if (scratch.length < length) {
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		}
+		buffer.get(scratch, 0, length);
+		return new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private String readShared() {
+		int index = buffer.getInt();
+		return index < 0 ? null : stringTable[index];
+	}
+
+	private LocalDate readDate() {
+		int epochDay = buffer.getInt();
+		return epochDay == BinarySnapshotWriter.NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+	}
+
+	private LocalDateTime readDateTime() {
+		long epochSecond = buffer.getLong();
+		return epochSecond == BinarySnapshotWriter.NULL_DATE_TIME ? null
+				: LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+	}
+}
@@ -0,0 +1,229 @@
+package model;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The BinarySnapshotWriter class writes the data store in a compact, versioned binary form that can be
+ * loaded far faster than xml. Strings are length-prefixed, and strings that repeat across the data store,
+ * such as author names and email addresses, are written once to a string table and referred to by index.
+ * Dates are written as fixed-width numbers.
+ *
+ * The layout is a header (magic number and version), the body, the string table, and a footer holding the
+ * offset of the string table and a checksum of everything before the footer. The string table is written
+ * after the body so that the body can be streamed out in a single pass. From version 2 the body ends with
+ * a list of shard files, used when each research group is stored in a file of its own.
+ *
+ */
+class BinarySnapshotWriter {
+	static final int MAGIC = 0x44504D53;
+	static final short VERSION = 2;
+	static final int FOOTER_LENGTH = 20;
+	static final int NULL_REFERENCE = -1;
+	static final int NULL_DATE = Integer.MIN_VALUE;
+	static final long NULL_DATE_TIME = Long.MIN_VALUE;
+
+	private CRC32 crc;
+	private DataOutputStream out;
+	private HashMap<String, Integer> stringIndex;
+	private ArrayList<String> stringTable;
+	private Map<Publication, long[]> abstractPositions;
+
+	public BinarySnapshotWriter(OutputStream out) {
+		this.crc = new CRC32();
+		this.out = new DataOutputStream(new CheckedOutputStream(out, crc));
+		this.stringIndex = new HashMap<String, Integer>();
+		this.stringTable = new ArrayList<String>();
+	}
+
+	/**
+	 * Records the offset and length in bytes of each publication's abstract as it is written, so that
+	 * abstracts can be read back from the snapshot without loading the rest of it.
+	 *
+	 * @param abstractPositions Map to record positions in, or null to record none.
+	 */
+	public void setAbstractPositions(Map<Publication, long[]> abstractPositions) {
+		this.abstractPositions = abstractPositions;
+	}
+
+	/**
+	 * Writes the whole data store as a single snapshot.
+	 *
+	 * @param dataStore
+	 * @throws IOException If the underlying stream cannot be written to.
+	 */
+	public void write(DataStorage dataStore) throws IOException {
+		write(dataStore.getJournalSequence(), dataStore.getSystemAdmin(), dataStore.getResearchGroupList(),
+				Collections.<Integer, String>emptyMap());
+	}
+
+	/**
+	 * Writes a snapshot holding the given system administrator, research groups, and list of shard files.
+	 *
+	 * @param journalSequence Sequence number of the last journal record contained in the snapshot.
+	 * @param admin System administrator, or null if the snapshot does not hold one.
+	 * @param groups
+	 * @param shards Names of the files holding each research group, keyed by group ID.
+	 * @throws IOException If the underlying stream cannot be written to.
+	 */
+	public void write(long journalSequence, SystemAdmin admin, List<ResearchGroup> groups, Map<Integer, String> shards)
+			throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeLong(journalSequence);
+
+		out.writeBoolean(admin != null);
+		if (admin != null) {
+			writeShared(admin.getName());
+			writeShared(admin.getOfficeNumber());
+			writeShared(admin.getPhoneNumber());
+			writeShared(admin.getEmailAddress());
+			writeString(admin.getPassword());
+		}
+
+		out.writeInt(groups.size());
+		for (ResearchGroup g : groups) {
+			writeGroup(g);
+		}
+
+		out.writeInt(shards.size());
+		for (Map.Entry<Integer, String> shard : shards.entrySet()) {
+			out.writeInt(shard.getKey());
+			writeString(shard.getValue());
+		}
+
+		long tableOffset = out.size();
+		out.writeInt(stringTable.size());
+		for (String s : stringTable) {
+			writeString(s);
+		}
+
+		long checksum = crc.getValue();
+		out.writeLong(tableOffset);
+		out.writeLong(checksum);
+		out.writeInt(MAGIC);
+		out.flush();
+	}
+
+	private void writeGroup(ResearchGroup g) throws IOException {
+		out.writeInt(g.getGroupID());
+		writeShared(g.getName());
+		AcademicStaff coordinator = g.getSeminarCoordinator();
+		writeShared(coordinator != null ? coordinator.getEmailAddress() : null);
+
+		out.writeInt(g.getMembers().size());
+		for (GroupMember m : g.getMembers()) {
+			writeMember(m);
+		}
+
+		out.writeInt(g.getSeminarList().size());
+		for (Seminar s : g.getSeminarList()) {
+			writeString(s.getTopic());
+			writeShared(s.getLocation());
+			writeDateTime(s.getDateTime());
+		}
+	}
+
+	private void writeMember(GroupMember m) throws IOException {
+		out.writeByte(m.getType().ordinal());
+		writeShared(m.getName());
+		writeShared(m.getTitle());
+		writeShared(m.getEmailAddress());
+
+		if (m.getType() == GroupMember.memberType.STUDENT) {
+			writeString(((ResearchStudent) m).getStudentID());
+		} else if (m.getType() == GroupMember.memberType.STAFF) {
+			AcademicStaff staff = (AcademicStaff) m;
+			writeString(staff.getPassword());
+			out.writeBoolean(staff.coordinator());
+
+			out.writeInt(staff.getPublicationList().size());
+			for (Publication p : staff.getPublicationList()) {
+				writePublication(p);
+			}
+		}
+	}
+
+	private void writePublication(Publication p) throws IOException {
+		out.writeByte(p.getPublicationType().ordinal());
+		writeString(p.getPublicationID());
+		writeString(p.getTitle());
+
+		out.writeInt(p.getAuthorNames().size());
+		for (String n : p.getAuthorNames()) {
+			writeShared(n);
+		}
+
+		String aBstract = p.getaBstract();
+		long abstractOffset = out.size() + 4;
+		writeString(aBstract);
+		if (abstractPositions != null && aBstract != null) {
+			abstractPositions.put(p, new long[] {abstractOffset, out.size() - abstractOffset});
+		}
+		out.writeInt(p.getGroupID());
+		writeShared(p.getStaffEmail());
+		writeDate(p.getPublicationDate());
+
+		if (p.getPublicationType() == Publication.publicationType.JOURNALPAPER) {
+			JournalPaper journal = (JournalPaper) p;
+			writeShared(journal.getJournalName());
+			out.writeInt(journal.getPageNumber());
+		} else if (p.getPublicationType() == Publication.publicationType.CONFERENCEPAPER) {
+			ConferencePaper conference = (ConferencePaper) p;
+			writeShared(conference.getConferenceName());
+			writeShared(conference.getConferenceLocation());
+			writeDate(conference.getConferenceDate());
+		} else if (p.getPublicationType() == Publication.publicationType.BOOK) {
+			Book book = (Book) p;
+			writeString(book.getiSBN());
+			writeShared(book.getPublisher());
+		}
+	}
+
+	//Writes a length-prefixed string in place, a negative length standing for null.
+	private void writeString(String s) throws IOException {
+		if (s == null) {
+			out.writeInt(NULL_REFERENCE);
+		} else {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	//Writes a reference to the string's entry in the string table, adding it if it is not yet there.
+	private void writeShared(String s) throws IOException {
+		if (s == null) {
+			out.writeInt(NULL_REFERENCE);
+			return;
+		}
+
+		Integer index = stringIndex.get(s);
+		if (index == null) {
+			index = stringTable.size();
+			stringIndex.put(s, index);
+			stringTable.add(s);
+		}
+		out.writeInt(index);
+	}
+
+	private void writeDate(LocalDate date) throws IOException {
+		out.writeInt(date == null ? NULL_DATE : (int) date.toEpochDay());
+	}
+
+	private void writeDateTime(LocalDateTime dateTime) throws IOException {
+		out.writeLong(dateTime == null ? NULL_DATE_TIME : dateTime.toEpochSecond(ZoneOffset.UTC));
+	}
+}
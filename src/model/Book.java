@@ -20,6 +20,7 @@ public class Book extends Publication {
 
 	public void setiSBN(String iSBN) {
 		this.iSBN = iSBN;
+		markModified();
 	}
 
 	public String getPublisher() {
@@ -28,5 +29,6 @@ public class Book extends Publication {
 
 	public void setPublisher(String publisher) {
 		this.publisher = publisher;
+		markModified();
 	}
 }
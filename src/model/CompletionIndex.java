@@ -0,0 +1,381 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The CompletionIndex class suggests completions of a partly typed publication title or author name.
+ * Titles and names are held in a radix trie, keyed by their normalized form, and a prefix is completed
+ * with the titles and names below it that belong to the most publications.
+ *
+ * Each node of the trie caches its best completions, so a lookup costs no more than a walk down to the
+ * prefix. A change to the trie only discards the cached completions of the nodes on the changed path, and
+ * they are worked out again from their children's when next asked for, so bulk loads do no ranking at
+ * all. Nodes with no more entries below them than are cached keep no cache, as their entries can simply
+ * be listed.
+ *
+ * Lookups fill in the cached completions, and are made outside the data store's lock, so the index's
+ * methods are synchronized.
+ *
+ */
+public class CompletionIndex implements PublicationIndex {
+	private static final Comparator<Entry> RANK = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry a, Entry b) {
+			int weight = Integer.compare(b.titleCount + b.authorCount, a.titleCount + a.authorCount);
+			return weight != 0 ? weight : a.key.compareTo(b.key);
+		}
+	};
+	private static final Entry[] NO_ENTRIES = new Entry[0];
+
+	private int cacheSize;
+	private Node root;
+	private IdentityHashMap<Publication, String[]> indexedKeys;
+
+	public CompletionIndex() {
+		this(10);
+	}
+
+	/**
+	 * @param cacheSize Number of completions cached at each node. Lookups asking for more than this many
+	 * completions list every entry below the prefix.
+	 */
+	public CompletionIndex(int cacheSize) {
+		this.cacheSize = cacheSize;
+		clear();
+	}
+
+	/**
+	 * A suggested completion, with the number of publications it is the title of or an author of.
+	 *
+	 */
+	public static class Completion {
+		private String text;
+		private int titleCount;
+		private int authorCount;
+
+		private Completion(Entry entry) {
+			this.text = entry.text;
+			this.titleCount = entry.titleCount;
+			this.authorCount = entry.authorCount;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		public int getTitleCount() {
+			return titleCount;
+		}
+
+		public int getAuthorCount() {
+			return authorCount;
+		}
+
+		public boolean isTitle() {
+			return titleCount > 0;
+		}
+
+		public boolean isAuthor() {
+			return authorCount > 0;
+		}
+	}
+
+	private static class Entry {
+		private String key;
+		private String text;
+		private int titleCount;
+		private int authorCount;
+	}
+
+	private static class Node {
+		private String label;
+		private Entry entry;
+		private char[] childKeys = new char[0];
+		private Node[] children = new Node[0];
+		//Number of entries in the subtree rooted at the node.
+		private int size;
+		private Entry[] best;
+
+		private Node(String label) {
+			this.label = label;
+		}
+
+		private Node child(char c) {
+			int i = Arrays.binarySearch(childKeys, c);
+			return i < 0 ? null : children[i];
+		}
+
+		private void putChild(Node child) {
+			char c = child.label.charAt(0);
+			int i = Arrays.binarySearch(childKeys, c);
+			if (i >= 0) {
+				children[i] = child;
+				return;
+			}
+			i = -i - 1;
+			char[] keys = new char[childKeys.length + 1];
+			Node[] nodes = new Node[children.length + 1];
+			System.arraycopy(childKeys, 0, keys, 0, i);
+			System.arraycopy(children, 0, nodes, 0, i);
+			keys[i] = c;
+			nodes[i] = child;
+			System.arraycopy(childKeys, i, keys, i + 1, childKeys.length - i);
+			System.arraycopy(children, i, nodes, i + 1, children.length - i);
+			childKeys = keys;
+			children = nodes;
+		}
+
+		private void removeChild(char c) {
+			int i = Arrays.binarySearch(childKeys, c);
+			char[] keys = new char[childKeys.length - 1];
+			Node[] nodes = new Node[children.length - 1];
+			System.arraycopy(childKeys, 0, keys, 0, i);
+			System.arraycopy(children, 0, nodes, 0, i);
+			System.arraycopy(childKeys, i + 1, keys, i, keys.length - i);
+			System.arraycopy(children, i + 1, nodes, i, nodes.length - i);
+			childKeys = keys;
+			children = nodes;
+		}
+	}
+
+	@Override
+	public synchronized void add(Publication publication) {
+		LinkedHashMap<String, String> authors = new LinkedHashMap<String, String>();
+		if (publication.getAuthorNames() != null) {
+			for (String author : publication.getAuthorNames()) {
+				String key = AuthorIndex.normalize(author);
+				if (!key.isEmpty() && !authors.containsKey(key)) {
+					authors.put(key, author);
+				}
+			}
+		}
+
+		//The title's key comes first, null if the publication has no title, followed by each author's.
+		String[] keys = new String[authors.size() + 1];
+		String title = publication.getTitle() == null ? "" : AuthorIndex.normalize(publication.getTitle());
+		if (!title.isEmpty()) {
+			keys[0] = title;
+			update(title, publication.getTitle(), 1, 0);
+		}
+		int i = 1;
+		for (Map.Entry<String, String> author : authors.entrySet()) {
+			keys[i++] = author.getKey();
+			update(author.getKey(), author.getValue(), 0, 1);
+		}
+		indexedKeys.put(publication, keys);
+	}
+
+	@Override
+	public synchronized void remove(Publication publication) {
+		String[] keys = indexedKeys.remove(publication);
+		if (keys == null) {
+			return;
+		}
+		if (keys[0] != null) {
+			update(keys[0], null, -1, 0);
+		}
+		for (int i=1; i < keys.length; i++) {
+			update(keys[i], null, 0, -1);
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		root = new Node("");
+		indexedKeys = new IdentityHashMap<Publication, String[]>();
+	}
+
+	//Adjusts the counts of the entry with the given key, creating or deleting it as needed, and discards
+	//the cached completions of every node on its path.
+	private void update(String key, String text, int titles, int authors) {
+		ArrayList<Node> path = new ArrayList<Node>();
+		Node node = root;
+		int offset = 0;
+		path.add(node);
+
+		while (offset < key.length()) {
+			Node child = node.child(key.charAt(offset));
+			if (child == null) {
+				if (titles < 0 || authors < 0) {
+					return;
+				}
+				child = new Node(key.substring(offset));
+				node.putChild(child);
+				node = child;
+				path.add(node);
+				break;
+			}
+
+			int common = commonPrefix(child.label, key, offset);
+			if (common < child.label.length()) {
+				if (titles < 0 || authors < 0) {
+					return;
+				}
+				Node split = new Node(child.label.substring(0, common));
+				child.label = child.label.substring(common);
+				split.putChild(child);
+				split.size = child.size;
+				node.putChild(split);
+				child = split;
+			}
+			node = child;
+			path.add(node);
+			offset += common;
+		}
+
+		int sizeChange = 0;
+		if (node.entry == null) {
+			if (titles < 0 || authors < 0) {
+				return;
+			}
+			node.entry = new Entry();
+			node.entry.key = key;
+			node.entry.text = text;
+			sizeChange = 1;
+		}
+		node.entry.titleCount += titles;
+		node.entry.authorCount += authors;
+		if (node.entry.titleCount + node.entry.authorCount <= 0) {
+			node.entry = null;
+			sizeChange = -1;
+		}
+
+		for (Node n : path) {
+			n.size += sizeChange;
+			n.best = null;
+		}
+		if (sizeChange < 0) {
+			prune(path);
+		}
+	}
+
+	//Removes nodes left with no entries below them, and merges nodes left with a single child into it.
+	private void prune(ArrayList<Node> path) {
+		for (int i = path.size() - 1; i > 0; i--) {
+			Node node = path.get(i);
+			Node parent = path.get(i - 1);
+			if (node.size == 0) {
+				parent.removeChild(node.label.charAt(0));
+			} else if (node.entry == null && node.children.length == 1) {
+				Node child = node.children[0];
+				child.label = node.label + child.label;
+				parent.putChild(child);
+			}
+		}
+	}
+
+	//Returns the length of the common prefix of the label and the key from the given offset.
+	private static int commonPrefix(String label, String key, int offset) {
+		int n = Math.min(label.length(), key.length() - offset);
+		int i = 0;
+		while (i < n && label.charAt(i) == key.charAt(offset + i)) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the titles and author names beginning with the given prefix, those belonging to the most
+	 * publications first. The prefix is normalized as names are, except that a trailing space is kept.
+	 *
+	 * @param prefix
+	 * @param limit Maximum number of completions.
+	 * @return Completions, best first.
+	 */
+	public synchronized List<Completion> complete(String prefix, int limit) {
+		String key = AuthorIndex.normalize(prefix);
+		if (!key.isEmpty() && Character.isWhitespace(prefix.charAt(prefix.length() - 1))) {
+			key += " ";
+		}
+
+		Node node = root;
+		int offset = 0;
+		while (offset < key.length()) {
+			Node child = node.child(key.charAt(offset));
+			if (child == null) {
+				return Collections.emptyList();
+			}
+			int common = commonPrefix(child.label, key, offset);
+			if (offset + common < key.length() && common < child.label.length()) {
+				return Collections.emptyList();
+			}
+			node = child;
+			offset += common;
+		}
+
+		Entry[] entries = limit <= cacheSize ? best(node) : all(node, limit);
+		int n = Math.min(limit, entries.length);
+		ArrayList<Completion> completions = new ArrayList<Completion>(n);
+		for (int i=0; i < n; i++) {
+			completions.add(new Completion(entries[i]));
+		}
+		return completions;
+	}
+
+	//Returns the best entries below the node, working them out from its children's if not cached.
+	private Entry[] best(Node node) {
+		if (node.size <= cacheSize) {
+			ArrayList<Entry> entries = new ArrayList<Entry>(node.size);
+			collect(node, entries);
+			Collections.sort(entries, RANK);
+			return entries.toArray(NO_ENTRIES);
+		}
+		if (node.best != null) {
+			return node.best;
+		}
+
+		ArrayList<Entry> candidates = new ArrayList<Entry>();
+		if (node.entry != null) {
+			candidates.add(node.entry);
+		}
+		for (Node child : node.children) {
+			candidates.addAll(Arrays.asList(best(child)));
+		}
+		Collections.sort(candidates, RANK);
+		node.best = candidates.subList(0, Math.min(cacheSize, candidates.size())).toArray(NO_ENTRIES);
+		return node.best;
+	}
+
+	private static void collect(Node node, List<Entry> entries) {
+		if (node.entry != null) {
+			entries.add(node.entry);
+		}
+		for (Node child : node.children) {
+			collect(child, entries);
+		}
+	}
+
+	//Returns the best entries below the node by listing all of them, for lookups larger than the cache.
+	private static Entry[] all(Node node, int limit) {
+		PriorityQueue<Entry> kept = new PriorityQueue<Entry>(Collections.reverseOrder(RANK));
+		ArrayList<Entry> entries = new ArrayList<Entry>();
+		collect(node, entries);
+		for (Entry e : entries) {
+			kept.add(e);
+			if (kept.size() > limit) {
+				kept.poll();
+			}
+		}
+
+		Entry[] result = kept.toArray(NO_ENTRIES);
+		Arrays.sort(result, RANK);
+		return result;
+	}
+
+	/**
+	 * Returns the number of distinct titles and author names indexed.
+	 *
+	 * @return Number of entries.
+	 */
+	public synchronized int size() {
+		return root.size;
+	}
+}
@@ -0,0 +1,26 @@
+package model;
+
+/**
+ * The ConcurrentEditException class is thrown when an edit made against one version of an entity is
+ * refused because the entity has been changed since that version was read. The entity can be read again
+ * and the edit retried against its current version.
+ *
+ */
+public class ConcurrentEditException extends DPMSystemException {
+	private final long expectedVersion;
+	private final long currentVersion;
+
+	public ConcurrentEditException(String message, long expectedVersion, long currentVersion) {
+		super(message);
+		this.expectedVersion = expectedVersion;
+		this.currentVersion = currentVersion;
+	}
+
+	public long getExpectedVersion() {
+		return expectedVersion;
+	}
+
+	public long getCurrentVersion() {
+		return currentVersion;
+	}
+}
@@ -23,6 +23,7 @@ public class ConferencePaper extends Publication {
 
 	public void setConferenceName(String conferenceName) {
 		this.conferenceName = conferenceName;
+		markModified();
 	}
 
 	public String getConferenceLocation() {
@@ -31,6 +32,7 @@ public class ConferencePaper extends Publication {
 
 	public void setConferenceLocation(String conferenceLocation) {
 		this.conferenceLocation = conferenceLocation;
+		markModified();
 	}
 
 	public LocalDate getConferenceDate() {
@@ -39,5 +41,6 @@ public class ConferencePaper extends Publication {
 
 	public void setConferenceDate(LocalDate conferenceDate) {
 		this.conferenceDate = conferenceDate;
+		markModified();
 	}
 }
@@ -0,0 +1,85 @@
+package model;
+
+/**
+ * The DataSnapshot class holds the publication, research group, academic staff and research student lists
+ * of a data store as they stood at one moment. A snapshot is never altered; each change to the lists makes
+ * a new one, with a higher version, sharing the unchanged parts of the old. A reader holding a snapshot
+ * can therefore go through it at length, without locking, while changes carry on.
+ *
+ * Only membership of the lists is fixed by a snapshot. The publications, groups and members themselves
+ * are shared with the data store, so edits made to them after the snapshot was taken are seen through it.
+ *
+ */
+public final class DataSnapshot {
+	private final long version;
+	private final PersistentList<Publication> publications;
+	private final PersistentList<ResearchGroup> researchGroups;
+	private final PersistentList<AcademicStaff> academicStaff;
+	private final PersistentList<ResearchStudent> researchStudents;
+
+	DataSnapshot() {
+		this(0, PersistentList.<Publication>empty(), PersistentList.<ResearchGroup>empty(),
+				PersistentList.<AcademicStaff>empty(), PersistentList.<ResearchStudent>empty());
+	}
+
+	private DataSnapshot(long version, PersistentList<Publication> publications,
+			PersistentList<ResearchGroup> researchGroups, PersistentList<AcademicStaff> academicStaff,
+			PersistentList<ResearchStudent> researchStudents) {
+		this.version = version;
+		this.publications = publications;
+		this.researchGroups = researchGroups;
+		this.academicStaff = academicStaff;
+		this.researchStudents = researchStudents;
+	}
+
+	DataSnapshot withPublications(PersistentList<Publication> publications) {
+		return new DataSnapshot(version + 1, publications, researchGroups, academicStaff, researchStudents);
+	}
+
+	DataSnapshot withResearchGroups(PersistentList<ResearchGroup> researchGroups) {
+		return new DataSnapshot(version + 1, publications, researchGroups, academicStaff, researchStudents);
+	}
+
+	DataSnapshot withAcademicStaff(PersistentList<AcademicStaff> academicStaff) {
+		return new DataSnapshot(version + 1, publications, researchGroups, academicStaff, researchStudents);
+	}
+
+	DataSnapshot withResearchStudents(PersistentList<ResearchStudent> researchStudents) {
+		return new DataSnapshot(version + 1, publications, researchGroups, academicStaff, researchStudents);
+	}
+
+	/**
+	 * Returns an empty snapshot following this one.
+	 *
+	 * @return Snapshot with every list empty.
+	 */
+	DataSnapshot cleared() {
+		return new DataSnapshot(version + 1, PersistentList.<Publication>empty(), PersistentList.<ResearchGroup>empty(),
+				PersistentList.<AcademicStaff>empty(), PersistentList.<ResearchStudent>empty());
+	}
+
+	/**
+	 * Returns the version of the snapshot, which increases by one with each change to the lists.
+	 *
+	 * @return Version.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public PersistentList<Publication> getPublications() {
+		return publications;
+	}
+
+	public PersistentList<ResearchGroup> getResearchGroups() {
+		return researchGroups;
+	}
+
+	public PersistentList<AcademicStaff> getAcademicStaff() {
+		return academicStaff;
+	}
+
+	public PersistentList<ResearchStudent> getResearchStudents() {
+		return researchStudents;
+	}
+}
@@ -1,47 +1,143 @@
 package model;
 
-import org.w3c.dom.*;
-
 import model.GroupMember.memberType;
 import model.Publication.publicationType;
 
-import javax.xml.parsers.*;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLStreamException;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 
 import view.Viewer;
 
 /**
  * The DataStorage class holds the lists of publications, research groups, academic staff,
  * and research students, and a reference to the system administrator. As well a list registered views,
- * which it notifies when changes are made.
+ * which it notifies when changes are made. Publications are indexed by publicationID, title and author, and
+ * further indexes can be registered; each is kept up to date as publications are added, removed and edited.
+ *
+ * The data store may be shared between threads. Changes to it, including edits to the publications it
+ * holds, are made one at a time under the write lock of a StampedLock, while searches share the read
+ * lock. Lookups of a single publication do not lock at all unless a change overlaps them. Research groups,
+ * their members and seminars are edited through their own methods, and are not covered by the lock;
+ * controllers instead serialize such edits one group at a time through getGroupLocks.
+ *
+ * The publication, research group, staff and student lists are published together as a DataSnapshot,
+ * which is never altered; each change to a list swaps in a new snapshot sharing most of the old one's
+ * structure. The list getters and saveData read the current snapshot without locking, so a long pass
+ * over the lists neither waits for nor holds up changes. A new snapshot is published to other threads
+ * as the writer releases the lock, so the steps of a Transaction, begun through beginTransaction, are
+ * seen together or not at all.
  *
  */
 public class DataStorage implements Viewable {
+	public enum snapshotFormat {
+		XML,
+		BINARY,
+		SHARDED;
+	}
+	
+	//Longest a reader gives way to a waiting writer.
+	private static final long WRITER_PRIORITY_NANOS = 1000000;
+	
 	private ArrayList<Viewer> registeredViews;
-	private ArrayList<Publication> publicationList;
-	private ArrayList<ResearchGroup> researchGroupList;
-	private ArrayList<AcademicStaff> academicStaffList;
-	private ArrayList<ResearchStudent> researchStudentList;
+	//Snapshot as changed by the thread holding the write lock, and as last published to other threads.
+	private DataSnapshot snapshot;
+	private volatile DataSnapshot published;
 	private SystemAdmin systemAdmin;
 	private File file;
+	private LoadStatistics loadStatistics;
+	private MutationJournal journal;
+	private long journalSequence;
+	private int checkpointInterval;
+	private PersistenceScheduler persistenceScheduler;
+	private SnapshotGenerations snapshots;
+	private SnapshotGenerations binarySnapshots;
+	private snapshotFormat format;
+	private ShardedSnapshot shardedSnapshot;
+	private HashSet<Integer> dirtyGroups;
+	private FragmentCache fragmentCache;
+	private AbstractCache abstractCache;
+	private boolean bulkLoading;
+	private ArrayList<PublicationIndex> publicationIndexes;
+	private PublicationHashIndex publicationIDIndex;
+	private PublicationHashIndex titleIndex;
+	private AuthorIndex authorIndex;
+	private PublicationDateIndex dateIndex;
+	private SortedPublicationIndex typeIndex;
+	private PublicationHashIndex staffEmailIndex;
+	private int publicationSerial;
+	private final StampedLock lock = new StampedLock();
+	private final AtomicInteger waitingWriters = new AtomicInteger();
+	private volatile Thread writer;
+	private int writeDepth;
+	private long writeStamp;
+	private volatile FullTextIndex fullTextIndex;
+	private volatile CompletionIndex completionIndex;
+	private volatile FuzzyAuthorIndex fuzzyAuthorIndex;
+	private volatile SearchResultCache searchResultCache;
+	private volatile FacetCounts facetCounts;
+	private PublicationListener indexUpdater;
+	private final GroupLocks groupLocks = new GroupLocks(this::checkpointOnRelease);
+	private volatile boolean checkpointDue;
+	private Transaction transaction;
 	
 	public DataStorage() {
+		this(null);
+	}
+	
+	/**
+	 * Creates a data store whose snapshots and journal are kept in the given directory.
+	 * 
+	 * @param directory Directory of the data files, or null for the working directory.
+	 */
+	public DataStorage(File directory) {
 		registeredViews = new ArrayList<Viewer>();
-		publicationList = new ArrayList<Publication>();
-		researchGroupList = new ArrayList<ResearchGroup>();
-		academicStaffList = new ArrayList<AcademicStaff>();
-		researchStudentList = new ArrayList<ResearchStudent>();
+		snapshot = new DataSnapshot();
+		published = snapshot;
+		
+		publicationIndexes = new ArrayList<PublicationIndex>();
+		publicationIDIndex = new PublicationHashIndex(p -> p.getPublicationID());
+		titleIndex = new PublicationHashIndex(p -> p.getTitle());
+		publicationIndexes.add(publicationIDIndex);
+		authorIndex = new AuthorIndex();
+		publicationIndexes.add(titleIndex);
+		publicationIndexes.add(authorIndex);
+		dateIndex = new PublicationDateIndex();
+		publicationIndexes.add(dateIndex);
+		typeIndex = new SortedPublicationIndex(p -> p.getPublicationType().name());
+		publicationIndexes.add(typeIndex);
+		staffEmailIndex = new PublicationHashIndex(p -> p.getStaffEmail());
+		publicationIndexes.add(staffEmailIndex);
+		indexUpdater = new IndexUpdater();
 		
-		file = new File("DPMSystemData.xml");
+		file = new File(directory, "DPMSystemData.xml");
+		journal = new MutationJournal(new File(directory, "DPMSystemData.journal"));
+		checkpointInterval = 1000;
+		snapshots = new SnapshotGenerations(file, 1);
+		binarySnapshots = new SnapshotGenerations(new File(directory, "DPMSystemData.bin"), 1);
+		format = snapshotFormat.BINARY;
+		shardedSnapshot = new ShardedSnapshot(new File(directory, "DPMSystemData.shards"));
+		fragmentCache = new FragmentCache();
+		setSnapshotGenerations(3);
 	}
 	
 	public File getFile() {
@@ -55,14 +151,19 @@ public class DataStorage implements Viewable {
 	 * @throws DPMSystemException If publication with the same title already exists in list.
 	 */
 	public void addPublication(Publication publication) throws DPMSystemException {
-		for (Publication p : publicationList) {
-			if (p.getTitle().equals(publication.getTitle()) || p.getPublicationID().equals(publication.getPublicationID())) {
+		beginWrite();
+		try {
+			if (!bulkLoading && (titleIndex.contains(publication.getTitle()) 
+					|| publicationIDIndex.contains(publication.getPublicationID()))) {
 				throw new DPMSystemException("Publication with this publicationID or title already exists");
 			}
-		}
-		publicationList.add(publication);
+			snapshot = snapshot.withPublications(snapshot.getPublications().with(publication));
+			index(publication);
 		
-		notifyViews();
+			notifyViews();
+		} finally {
+			endWrite();
+		}
 	}
 	
 	/**
@@ -72,578 +173,1443 @@ public class DataStorage implements Viewable {
 	 * @throws DPMSystemException If publication does not exist in list.
 	 */
 	public void removePublication(Publication publication) throws DPMSystemException {
-		if (!publicationList.remove(publication)) {
-			throw new DPMSystemException("Publication not present in list.");
-		}
+		beginWrite();
+		try {
+			PersistentList<Publication> publications = snapshot.getPublications();
+			int i = indexOf(publications, publication);
+			if (i < 0) {
+				throw new DPMSystemException("Publication not present in list.");
+			}
+			unindex(publications.get(i));
+			snapshot = snapshot.withPublications(publications.without(i));
 		
-		notifyViews();
+			notifyViews();
+		} finally {
+			endWrite();
+		}
 	}
 	
 	/**
-	 * Adds research group to research group list.
+	 * Returns the publication with the given publicationID.
 	 * 
-	 * @param group
-	 * @throws DPMSystemException If group is already in list, 
-	 * or if there are already 10 groups in the list.
+	 * @param publicationID
+	 * @return The publication, or null if there is none.
 	 */
-	public void addResearchGroup(ResearchGroup group) throws DPMSystemException {
-		if (researchGroupList.contains(group)) {
-			throw new DPMSystemException("Group already in list.");
-		}
-		else if (researchGroupList.size() == 10) {
-			throw new DPMSystemException("There are already 10 groups registered to department.");
-		}
-		else {
-			researchGroupList.add(group);
-		}
-		
-		notifyViews();
+	public Publication getPublicationByID(String publicationID) {
+		return readOptimistically(() -> publicationIDIndex.get(publicationID));
 	}
 	
 	/**
-	 * Removes research group from research group list.
+	 * Returns the publication with the given title.
 	 * 
-	 * @param group
-	 * @throws DPMSystemException If group is not in list.
+	 * @param title
+	 * @return The publication, or null if there is none.
 	 */
-	public void removeResearchGroup(ResearchGroup group) throws DPMSystemException {
-		if (researchGroupList.contains(group)) {
-			researchGroupList.remove(group);
-		}
-		else {
-			throw new DPMSystemException("Group not in list.");
-		}
-		
-		notifyViews();
+	public Publication getPublicationByTitle(String title) {
+		return readOptimistically(() -> titleIndex.get(title));
 	}
 	
 	/**
-	 * Adds academic staff member to academic staff list.
+	 * Returns the publications listing the given author, ignoring case and differences in whitespace
+	 * between the names.
 	 * 
-	 * @param staff
-	 * @throws DPMSystemException If staff member is already in staff list.
+	 * @param author
+	 * @return Publications by the author, oldest first, empty if there are none.
 	 */
-	public void addAcademicStaff(AcademicStaff staff) throws DPMSystemException {
-		if (academicStaffList.contains(staff)) {
-			throw new DPMSystemException("Staff member already exists in staff list.");
-		}
-		else {
-			academicStaffList.add(staff);
+	public List<Publication> getPublicationsByAuthor(String author) {
+		long stamp = beginRead();
+		try {
+			return authorIndex.get(author);
+		} finally {
+			endRead(stamp);
 		}
-		
-		notifyViews();
 	}
 	
 	/**
-	 * Removes academic staff member from academic staff list.
+	 * Returns a page of the publications listing the given author, ordered by date then publicationID.
 	 * 
-	 * @param staff
-	 * @throws DPMSystemException If staff member is not in staff list.
+	 * @param author
+	 * @param cursor Cursor returned with the previous page, or null for the first page.
+	 * @param limit Maximum number of publications on the page.
+	 * @return The page.
+	 * @throws DPMSystemException If the cursor is malformed or the limit is not positive.
 	 */
-	public void removeAcademicStaff(AcademicStaff staff) throws DPMSystemException {
-		if (academicStaffList.contains(staff)) {
-			academicStaffList.remove(staff);
+	public PublicationPage getPublicationsByAuthor(String author, String cursor, int limit) 
+			throws DPMSystemException {
+		long stamp = beginRead();
+		try {
+			return authorIndex.page(author, cursor, limit);
+		} finally {
+			endRead(stamp);
 		}
-		else {
-			throw new DPMSystemException("Staff member is not in staff list.");
+	}
+	
+	/**
+	 * Returns the publications dated between the given dates, inclusive.
+	 * 
+	 * @param from Earliest date.
+	 * @param to Latest date.
+	 * @return Publications, oldest first, empty if there are none.
+	 */
+	public List<Publication> getPublicationsBetween(LocalDate from, LocalDate to) {
+		long stamp = beginRead();
+		try {
+			return dateIndex.get(from, to);
+		} finally {
+			endRead(stamp);
 		}
-		
-		notifyViews();
 	}
 	
 	/**
-	 * Adds research student to research student list.
+	 * Returns the publications of the given research group dated between the given dates, inclusive.
 	 * 
-	 * @param student
-	 * @throws DPMSystemException If student is already listed.
+	 * @param from Earliest date.
+	 * @param to Latest date.
+	 * @param groupID
+	 * @return Publications, oldest first, empty if there are none.
 	 */
-	public void addResearchStudent(ResearchStudent student) throws DPMSystemException {
-		if (researchStudentList.contains(student)) {
-			throw new DPMSystemException("Student already in list.");
+	public List<Publication> getPublicationsBetween(LocalDate from, LocalDate to, int groupID) {
+		long stamp = beginRead();
+		try {
+			return dateIndex.get(from, to, groupID);
+		} finally {
+			endRead(stamp);
 		}
-		else {
-			researchStudentList.add(student);
+	}
+	
+	/**
+	 * Returns the publications of the given type.
+	 * 
+	 * @param type
+	 * @return Publications of the type, oldest first, empty if there are none.
+	 */
+	public List<Publication> getPublicationsByType(publicationType type) {
+		long stamp = beginRead();
+		try {
+			return new ArrayList<Publication>(typeIndex.getAll(type.name()));
+		} finally {
+			endRead(stamp);
 		}
-		
-		notifyViews();
 	}
 	
 	/**
-	 * Removes research student from research student list.
+	 * Returns a page of the publications of the given type, ordered by date then publicationID.
 	 * 
-	 * @param student
-	 * @throws DPMSystemException If student is not in list.
+	 * @param type
+	 * @param cursor Cursor returned with the previous page, or null for the first page.
+	 * @param limit Maximum number of publications on the page.
+	 * @return The page.
+	 * @throws DPMSystemException If the cursor is malformed or the limit is not positive.
 	 */
-	public void removeResearchStudent(ResearchStudent student) throws DPMSystemException {
-		if (researchStudentList.contains(student)) {
-			researchStudentList.remove(student);
+	public PublicationPage getPublicationsByType(publicationType type, String cursor, int limit) 
+			throws DPMSystemException {
+		long stamp = beginRead();
+		try {
+			return typeIndex.page(type.name(), cursor, limit);
+		} finally {
+			endRead(stamp);
 		}
-		else {
-			throw new DPMSystemException("Student is not in list.");
+	}
+	
+	/**
+	 * Returns the publications submitted by the member of staff with the given email address.
+	 * 
+	 * @param staffEmail
+	 * @return Publications submitted by the member of staff, empty if there are none.
+	 */
+	public List<Publication> getPublicationsByStaffEmail(String staffEmail) {
+		long stamp = beginRead();
+		try {
+			return new ArrayList<Publication>(staffEmailIndex.getAll(staffEmail));
+		} finally {
+			endRead(stamp);
 		}
-		
-		notifyViews();
 	}
-
-	public ArrayList<Viewer> getRegisteredViews() {
-		return registeredViews;
+	
+	/**
+	 * Returns a new query over the publication list. Conditions are added to the query before its
+	 * results are streamed.
+	 * 
+	 * @return Query matching every publication until conditions are added.
+	 */
+	public PublicationQuery query() {
+		return new PublicationQuery(this);
 	}
-
-	public ArrayList<Publication> getPublicationList() {
-		return publicationList;
+	
+	//The package-private index getters give unlocked access, for use within a read.
+	PublicationDateIndex getDateIndex() {
+		return dateIndex;
 	}
-
-	public ArrayList<ResearchGroup> getResearchGroupList() {
-		return researchGroupList;
+	
+	AuthorIndex getAuthorIndex() {
+		return authorIndex;
 	}
-
-	public ArrayList<AcademicStaff> getAcademicStaffList() {
-		return academicStaffList;
+	
+	SortedPublicationIndex getTypeIndex() {
+		return typeIndex;
 	}
-
-	public ArrayList<ResearchStudent> getResearchStudentList() {
-		return researchStudentList;
+	
+	PublicationHashIndex getStaffEmailIndex() {
+		return staffEmailIndex;
 	}
-
-	public SystemAdmin getSystemAdmin() {
-		return systemAdmin;
+	
+	List<Publication> getPublications() {
+		return current().getPublications();
 	}
-
-	public void setSystemAdmin(SystemAdmin systemAdmin) {
-		this.systemAdmin = systemAdmin;
+	
+	//Finds the publication by its serial, as the list is in the order publications were indexed, falling
+	//back to comparing every publication for one that is equal but was not itself added.
+	private static int indexOf(PersistentList<Publication> publications, Publication publication) {
+		int low = 0;
+		int high = publications.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int serial = publications.get(mid).getSerial();
+			if (serial < publication.getSerial()) {
+				low = mid + 1;
+			} else if (serial > publication.getSerial()) {
+				high = mid - 1;
+			} else {
+				return publications.get(mid) == publication ? mid : -1;
+			}
+		}
+		return publications.indexOf(publication);
 	}
 	
 	/**
-	 * Saves system data to an xml file, allowing it to be recovered later.
+	 * Returns the full-text index over publication titles and abstracts. The index is built the first
+	 * time it is asked for, so loading is not slowed down when full-text search is not used, and is
+	 * kept up to date from then on.
 	 * 
-	 * @param file xml file
+	 * @return Full-text index.
 	 */
-	public void saveData(File file) {
-		try {
-			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder builder = factory.newDocumentBuilder();
-			
-			//Root element
-			Document doc = builder.newDocument();
-			Element rootEl = doc.createElement("dataStore");
-			doc.appendChild(rootEl);
-			
-			//System administrator
-			Element sysAdmin = doc.createElement("systemAdministrator");
-			rootEl.appendChild(sysAdmin);
-			
-			if (systemAdmin != null) {
-				Element adminName = doc.createElement("name");
-				adminName.appendChild(doc.createTextNode(systemAdmin.getName()));
-				sysAdmin.appendChild(adminName);
-				
-				Element officeNumber = doc.createElement("officeNumber");
-				officeNumber.appendChild(doc.createTextNode(systemAdmin.getOfficeNumber()));
-				sysAdmin.appendChild(officeNumber);
-				
-				Element phoneNumber = doc.createElement("phoneNumber");
-				phoneNumber.appendChild(doc.createTextNode(systemAdmin.getPhoneNumber()));
-				sysAdmin.appendChild(phoneNumber);
-				
-				Element adminEmail = doc.createElement("adminEmail");
-				adminEmail.appendChild(doc.createTextNode(systemAdmin.getEmailAddress()));
-				sysAdmin.appendChild(adminEmail);
-				
-				Element adminPassword = doc.createElement("password");
-				adminPassword.appendChild(doc.createTextNode(systemAdmin.getPassword()));
-				sysAdmin.appendChild(adminPassword);
+	public FullTextIndex getFullTextIndex() {
+		if (fullTextIndex == null) {
+			beginWrite();
+			try {
+				if (fullTextIndex == null) {
+					FullTextIndex index = new FullTextIndex();
+					for (Publication p : snapshot.getPublications()) {
+						index.add(p);
+					}
+					publicationIndexes.add(index);
+					fullTextIndex = index;
+				}
+			} finally {
+				endWrite();
 			}
-			
-			//Research group list.
-			Element rGList = doc.createElement("researchGroupList");
-			rootEl.appendChild(rGList);
-			
-			for (ResearchGroup g : researchGroupList) {
-				
-				Element researchGroup = doc.createElement("researchGroup");
-				rGList.appendChild(researchGroup);
-				researchGroup.setAttribute("groupID", String.valueOf(g.getGroupID()));
-				
-				Element name = doc.createElement("name");
-				name.appendChild(doc.createTextNode(g.getName()));
-				researchGroup.appendChild(name);
-				
-				//Member list.
-				Element memberList = doc.createElement("memberList");
-				researchGroup.appendChild(memberList);
-				
-				for (GroupMember m : g.getMembers()) {
-					
-					Element member = doc.createElement("member");
-					memberList.appendChild(member);
-					
-					Element memberName = doc.createElement("name");
-					memberName.appendChild(doc.createTextNode(m.getName()));
-					member.appendChild(memberName);
-					
-					Element memberTitle = doc.createElement("title");
-					memberTitle.appendChild(doc.createTextNode(m.getTitle()));
-					member.appendChild(memberTitle);
-					
-					Element memberEmail = doc.createElement("memberEmail");
-					memberEmail.appendChild(doc.createTextNode(m.getEmailAddress()));
-					member.appendChild(memberEmail);
-					
-					Element memberType = doc.createElement("memberType");
-					memberType.appendChild(doc.createTextNode(String.valueOf(m.getType())));
-					member.appendChild(memberType);
-					
-					if (m.getType() == GroupMember.memberType.STUDENT) {
-						ResearchStudent student = (ResearchStudent) m;
-						
-						Element studentID = doc.createElement("studentID");
-						studentID.appendChild(doc.createTextNode(student.getStudentID()));
-						member.appendChild(studentID);
-					} else if (m.getType() == GroupMember.memberType.STAFF) {
-						AcademicStaff staff = (AcademicStaff) m;
-						
-						Element password = doc.createElement("password");
-						password.appendChild(doc.createTextNode(staff.getPassword()));
-						member.appendChild(password);
-						
-						Element isCoordinator = doc.createElement("isCoordinator");
-						isCoordinator.appendChild(doc.createTextNode(String.valueOf(staff.coordinator())));
-						member.appendChild(isCoordinator);
-						
-						//Publication list.
-						Element pubList = doc.createElement("publicationList");
-						member.appendChild(pubList);
-						
-						for (Publication p : staff.getPublicationList()) {
-							
-							Element publication = doc.createElement("publication");
-							pubList.appendChild(publication);
-							publication.setAttribute("publicationID", p.getPublicationID());
-							
-							Element title = doc.createElement("title");
-							title.appendChild(doc.createTextNode(p.getTitle()));
-							publication.appendChild(title);
-							
-							Element authorNames = doc.createElement("authorNames");
-							publication.appendChild(authorNames);
-							
-							for (String n : p.getAuthorNames()) {
-								Element authorName = doc.createElement("name");
-								authorName.appendChild(doc.createTextNode(n));
-								authorNames.appendChild(authorName);
-							}
-							
-							Element aBstract = doc.createElement("abstract");
-							aBstract.appendChild(doc.createTextNode(p.getaBstract()));
-							publication.appendChild(aBstract);
-							
-							Element groupID = doc.createElement("groupID");
-							groupID.appendChild(doc.createTextNode(String.valueOf(p.getGroupID())));
-							publication.appendChild(groupID);
-							
-							Element staffEmail = doc.createElement("staffEmail");
-							staffEmail.appendChild(doc.createTextNode(p.getStaffEmail()));
-							publication.appendChild(staffEmail);
-							
-							Element type = doc.createElement("type");
-							type.appendChild(doc.createTextNode(String.valueOf(p.getPublicationType())));
-							publication.appendChild(type);
-							
-							Element publicationDate = doc.createElement("publicationDate");
-							LocalDate date = p.getPublicationDate();
-							String dateString = new String("" + date.getYear() + "," + 
-							date.getMonthValue() + "," + date.getDayOfMonth());
-							publicationDate.appendChild(doc.createTextNode(dateString));
-							publication.appendChild(publicationDate);
-							
-							if (p.getPublicationType() == Publication.publicationType.JOURNALPAPER) {
-								JournalPaper journal = (JournalPaper) p;
-								
-								Element journalName = doc.createElement("journalName");
-								journalName.appendChild(doc.createTextNode(journal.getJournalName()));
-								publication.appendChild(journalName);
-								
-								Element pageNumber = doc.createElement("pageNumber");
-								pageNumber.appendChild(doc.createTextNode(String.valueOf(journal.getPageNumber())));
-								publication.appendChild(pageNumber);
-							} 
-							else if (p.getPublicationType() == Publication.publicationType.CONFERENCEPAPER) {
-								ConferencePaper conference = (ConferencePaper) p;
-								
-								Element conferenceName = doc.createElement("conferenceName");
-								conferenceName.appendChild(doc.createTextNode(conference.getConferenceName()));
-								publication.appendChild(conferenceName);
-								
-								Element conferenceLocation = doc.createElement("conferenceLocation");
-								conferenceLocation.appendChild(doc.createTextNode(conference.getConferenceLocation()));
-								publication.appendChild(conferenceLocation);
-								
-								Element conferenceDate = doc.createElement("conferenceDate");
-								LocalDate cDate = conference.getConferenceDate();
-								String cDateString = new String("" + cDate.getYear() + "," + 
-										cDate.getMonthValue() + "," + cDate.getDayOfMonth());
-								conferenceDate.appendChild(doc.createTextNode(cDateString));
-								publication.appendChild(conferenceDate);
-							}
-							else if (p.getPublicationType() == Publication.publicationType.BOOK) {
-								Book book = (Book) p;
-								
-								Element iSBN = doc.createElement("ISBN");
-								iSBN.appendChild(doc.createTextNode(book.getiSBN()));
-								publication.appendChild(iSBN);
-								
-								Element publisher = doc.createElement("publisher");
-								publisher.appendChild(doc.createTextNode(book.getPublisher()));
-								publication.appendChild(publisher);
-							}
-						}
+		}
+		return fullTextIndex;
+	}
+	
+	/**
+	 * Returns the index completing partly typed titles and author names. Like the full-text index, it
+	 * is built the first time it is asked for and kept up to date from then on.
+	 * 
+	 * @return Completion index.
+	 */
+	public CompletionIndex getCompletionIndex() {
+		if (completionIndex == null) {
+			beginWrite();
+			try {
+				if (completionIndex == null) {
+					CompletionIndex index = new CompletionIndex();
+					for (Publication p : snapshot.getPublications()) {
+						index.add(p);
+					}
+					publicationIndexes.add(index);
+					completionIndex = index;
+				}
+			} finally {
+				endWrite();
+			}
+		}
+		return completionIndex;
+	}
+	
+	/**
+	 * Returns the index finding author names close to a possibly misspelt name. Like the full-text
+	 * index, it is built the first time it is asked for and kept up to date from then on.
+	 * 
+	 * @return Fuzzy author index.
+	 */
+	public FuzzyAuthorIndex getFuzzyAuthorIndex() {
+		if (fuzzyAuthorIndex == null) {
+			beginWrite();
+			try {
+				if (fuzzyAuthorIndex == null) {
+					FuzzyAuthorIndex index = new FuzzyAuthorIndex();
+					for (Publication p : snapshot.getPublications()) {
+						index.add(p);
 					}
+					publicationIndexes.add(index);
+					fuzzyAuthorIndex = index;
 				}
-				
-				Element seminarCoordinator = doc.createElement("seminarCoordinator");
-				if (g.getSeminarCoordinator() != null) {
-					seminarCoordinator.appendChild(doc.createTextNode(g.getSeminarCoordinator().getEmailAddress()));
+			} finally {
+				endWrite();
+			}
+		}
+		return fuzzyAuthorIndex;
+	}
+	
+	/**
+	 * Returns the counts of publications by type, year, research group and author. Like the full-text
+	 * index, they are counted the first time they are asked for and kept up to date from then on.
+	 * 
+	 * @return Facet counts.
+	 */
+	public FacetCounts getFacetCounts() {
+		if (facetCounts == null) {
+			beginWrite();
+			try {
+				if (facetCounts == null) {
+					FacetCounts index = new FacetCounts();
+					for (Publication p : snapshot.getPublications()) {
+						index.add(p);
+					}
+					publicationIndexes.add(index);
+					facetCounts = index;
 				}
-				researchGroup.appendChild(seminarCoordinator);
-				
-				//Seminar list.
-				Element seminarList = doc.createElement("seminarList");
-				researchGroup.appendChild(seminarList);
-				
-				for (Seminar s : g.getSeminarList()) {
-					
-					Element seminar = doc.createElement("seminar");
-					seminarList.appendChild(seminar);
-					
-					Element topic = doc.createElement("topic");
-					topic.appendChild(doc.createTextNode(s.getTopic()));
-					seminar.appendChild(topic);
-					
-					Element location = doc.createElement("location");
-					location.appendChild(doc.createTextNode(s.getLocation()));
-					seminar.appendChild(location);
-					
-					Element seminarDateTime = doc.createElement("seminarDateTime");
-					LocalDateTime dateTime = s.getDateTime();
-					String dateTimeString = new String("" + dateTime.getYear() + "," + 
-							dateTime.getMonthValue() + "," + dateTime.getDayOfMonth() + "," +
-							dateTime.getHour() + "," + dateTime.getMinute());
-					seminarDateTime.appendChild(doc.createTextNode(dateTimeString));
-					seminar.appendChild(seminarDateTime);
+			} finally {
+				endWrite();
+			}
+		}
+		return facetCounts;
+	}
+	
+	/**
+	 * Returns the cache of search results. It is created the first time it is asked for, and from then
+	 * on is told of every change to the publications, dropping the results the change affects.
+	 * 
+	 * @return Search result cache.
+	 */
+	public SearchResultCache getSearchResultCache() {
+		if (searchResultCache == null) {
+			beginWrite();
+			try {
+				if (searchResultCache == null) {
+					SearchResultCache cache = new SearchResultCache(1000);
+					publicationIndexes.add(cache);
+					searchResultCache = cache;
 				}
-				
-				
-				
+			} finally {
+				endWrite();
 			}
-			
-			//Write content into xml file;
-			TransformerFactory transformerFactory = TransformerFactory.newInstance();
-			Transformer transformer = transformerFactory.newTransformer();
-			DOMSource source = new DOMSource(doc);
-			StreamResult result = new StreamResult(file);
-			transformer.transform(source, result);
-		} catch (ParserConfigurationException pce) {
-			pce.printStackTrace();
-		} catch (TransformerException tfe) {
-			tfe.printStackTrace();
 		}
+		return searchResultCache;
 	}
 	
 	/**
-	 * Loads data from xml file.
+	 * Registers an index over the publication list, adding every publication currently held to it.
+	 * The index is then kept up to date as publications are added, removed and edited.
 	 * 
-	 * @param file xml file written to previously
+	 * @param index
+	 * @throws DPMSystemException If index is already registered.
 	 */
-	public void loadData(File file) {
-		//Empty all lists except the registered views list.
-		publicationList = new ArrayList<Publication>();
-		researchGroupList = new ArrayList<ResearchGroup>();
-		academicStaffList = new ArrayList<AcademicStaff>();
-		researchStudentList = new ArrayList<ResearchStudent>();
-		
+	public void addPublicationIndex(PublicationIndex index) throws DPMSystemException {
+		beginWrite();
 		try {
-			//Build document and read from file.
-			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder builder = factory.newDocumentBuilder();
-			Document doc = builder.parse(file);
-			
-			//Remove spaces etc.
-			doc.getDocumentElement().normalize();
-			
-			//Retrieve system administrator
-			NodeList sysAdminList = doc.getElementsByTagName("systemAdministrator");
-			
-			Element sysAdmin = (Element) sysAdminList.item(0);
-			
-			String adminName = sysAdmin.getElementsByTagName("name").item(0).getTextContent();
-			String officeNumber = sysAdmin.getElementsByTagName("officeNumber").item(0).getTextContent();
-			String phoneNumber = sysAdmin.getElementsByTagName("phoneNumber").item(0).getTextContent();
-			String adminEmail = sysAdmin.getElementsByTagName("adminEmail").item(0).getTextContent();
-			String adminPassword = sysAdmin.getElementsByTagName("password").item(0).getTextContent();
-			
-			SystemAdmin sA = new SystemAdmin(adminName, officeNumber, phoneNumber, adminEmail, adminPassword);
-			this.setSystemAdmin(sA);
-			
-			//Get list of research groups.
-			NodeList rGList = doc.getElementsByTagName("researchGroup");
-			
-			for (int i=0; i < rGList.getLength(); i++) {
-				Element group = (Element) rGList.item(i);
-				
-				int groupID = Integer.parseInt(group.getAttribute("groupID"));
-				String groupName = group.getElementsByTagName("name").item(0).getTextContent();
-				
-				ResearchGroup researchGroup = new ResearchGroup(groupName, groupID);
-				this.addResearchGroup(researchGroup);
-				
-				//Group member list.
-				NodeList gMList = group.getElementsByTagName("member");
-				
-				for (int x=0; x < gMList.getLength(); x++) {
-					Element member = (Element) gMList.item(x);
-					
-					String memberName = member.getElementsByTagName("name").item(0).getTextContent();
-					String memberTitle = member.getElementsByTagName("title").item(0).getTextContent();
-					String memberEmail = member.getElementsByTagName("memberEmail").item(0).getTextContent();
-					String memberType = member.getElementsByTagName("memberType").item(0).getTextContent();
-					
-					if (memberType.equals("STUDENT")){
-						String studentID = member.getElementsByTagName("studentID").item(0).getTextContent();
-						
-						ResearchStudent student = new ResearchStudent(memberName, memberTitle, researchGroup, 
-								memberEmail, GroupMember.memberType.STUDENT, studentID);
-						
-						researchGroup.addMember(student);
-						this.addResearchStudent(student);
-					} else if (memberType.equals("STAFF")) {
-						String password = member.getElementsByTagName("password").item(0).getTextContent();
-						String isCoordinator = member.getElementsByTagName("isCoordinator").item(0).getTextContent();
-						
-						AcademicStaff staff = new AcademicStaff(memberName, memberTitle, researchGroup, memberEmail, 
-								GroupMember.memberType.STAFF, password);
-						researchGroup.addMember(staff);
-						this.addAcademicStaff(staff);
-						
-						if (isCoordinator.equals("true")) {
-							staff.setCoordinator(true);
-						}
-						
-						//Publication list.
-						NodeList pubList = member.getElementsByTagName("publication");
-						
-						for (int y=0; y < pubList.getLength(); y++) {
-							Element publication = (Element) pubList.item(y);
-							
-							String publicationID = publication.getAttribute("publicationID");
-							String publicationTitle = publication.getElementsByTagName("title").item(0).getTextContent();
-							
-							ArrayList<String> authorNames = new ArrayList<String>();
-							NodeList nameList = publication.getElementsByTagName("name");
-							for (int z=0; z < nameList.getLength(); z++) {
-								Element authName = (Element) nameList.item(z);
-								authorNames.add(authName.getTextContent());
-							}
-							
-							String aBstract = publication.getElementsByTagName("abstract").item(0).getTextContent();
-							int grpID = Integer.parseInt(publication.getElementsByTagName("groupID").item(0).getTextContent());
-							String staffEmail = publication.getElementsByTagName("staffEmail").item(0).getTextContent();
-							String pubType = publication.getElementsByTagName("type").item(0).getTextContent();
-							String pubDate = publication.getElementsByTagName("publicationDate").item(0).getTextContent();
-							LocalDate publicationDate = LocalDate.of(Integer.parseInt(pubDate.split(",")[0]), 
-									Integer.parseInt(pubDate.split(",")[1]), Integer.parseInt(pubDate.split(",")[2]));
-							
-							if (pubType.equals("JOURNALPAPER")) {
-								String journalName = publication.getElementsByTagName("journalName").item(0).getTextContent();
-								int pageNumber = Integer.parseInt(publication.getElementsByTagName("pageNumber").item(0).getTextContent());
-								
-								JournalPaper jPaper = new JournalPaper(publicationID, publicationTitle, authorNames, aBstract, 
-										grpID, staffEmail, Publication.publicationType.JOURNALPAPER, publicationDate, journalName, pageNumber);
-								staff.addPublication(jPaper);
-								this.addPublication(jPaper);
-							} else if (pubType.equals("CONFERENCEPAPER")) {
-								String conferenceName = publication.getElementsByTagName("conferenceName").item(0).getTextContent();
-								String conferenceLocation = publication.getElementsByTagName("conferenceLocation").item(0).getTextContent();
-								String confDate = publication.getElementsByTagName("conferenceDate").item(0).getTextContent();
-								LocalDate conferenceDate = LocalDate.of(Integer.parseInt(confDate.split(",")[0]), 
-									Integer.parseInt(confDate.split(",")[1]), Integer.parseInt(confDate.split(",")[2]));
-								
-								ConferencePaper cPaper = new ConferencePaper(publicationID, publicationTitle, authorNames, aBstract, 
-										grpID, staffEmail, Publication.publicationType.CONFERENCEPAPER, publicationDate, conferenceName, 
-										conferenceLocation, conferenceDate);
-								staff.addPublication(cPaper);
-								this.addPublication(cPaper);
-							} else if (pubType.equals("BOOK")) {
-								String iSBN = publication.getElementsByTagName("ISBN").item(0).getTextContent();
-								String publisher = publication.getElementsByTagName("publisher").item(0).getTextContent();
-								
-								Book book = new Book(publicationID, publicationTitle, authorNames, aBstract, 
-										grpID, staffEmail, Publication.publicationType.BOOK, publicationDate, iSBN, publisher);
-								staff.addPublication(book);
-								this.addPublication(book);
-							}
-						}
+			if (publicationIndexes.contains(index)) {
+				throw new DPMSystemException("Index already registered.");
+			}
+			publicationIndexes.add(index);
+			for (Publication p : snapshot.getPublications()) {
+				index.add(p);
+			}
+		} finally {
+			endWrite();
+		}
+	}
+	
+	/**
+	 * Stops keeping the given index up to date.
+	 * 
+	 * @param index
+	 * @throws DPMSystemException If index is not registered.
+	 */
+	public void removePublicationIndex(PublicationIndex index) throws DPMSystemException {
+		beginWrite();
+		try {
+			if (!publicationIndexes.remove(index)) {
+				throw new DPMSystemException("Index not registered.");
+			}
+		} finally {
+			endWrite();
+		}
+	}
+	
+	private void index(Publication publication) {
+		publication.setSerial(++publicationSerial);
+		for (PublicationIndex i : publicationIndexes) {
+			i.add(publication);
+		}
+		publication.setListener(indexUpdater);
+	}
+	
+	private void unindex(Publication publication) {
+		publication.setListener(null);
+		for (PublicationIndex i : publicationIndexes) {
+			i.remove(publication);
+		}
+	}
+	
+	//Removes a publication from every index before it is edited, and adds it back once it has been, holding
+	//the write lock throughout the edit. The publication may have been removed from the data store while
+	//the lock was awaited, in which case the indexes are left alone.
+	private class IndexUpdater implements PublicationListener {
+		@Override
+		public void publicationChanging(Publication publication) {
+			beginWrite();
+			try {
+				if (publication.getListener() == this) {
+					for (PublicationIndex i : publicationIndexes) {
+						i.remove(publication);
 					}
 				}
-				
-				String sCEmail = group.getElementsByTagName("seminarCoordinator").item(0).getTextContent();
-				for (GroupMember g : researchGroup.getMembers()) {
-					if (g.getEmailAddress().equals(sCEmail)) {
-						researchGroup.setSeminarCoordinator((AcademicStaff) g);
-						break;
+			} catch (RuntimeException e) {
+				endWrite();
+				throw e;
+			}
+		}
+		
+		@Override
+		public void publicationChanged(Publication publication) {
+			try {
+				if (publication.getListener() == this) {
+					for (PublicationIndex i : publicationIndexes) {
+						i.add(publication);
 					}
 				}
-				
-				//Seminar list.
-				NodeList semList = group.getElementsByTagName("seminar");
-				
-				for (int b=0; b < semList.getLength(); b++) {
-					Element seminar = (Element) semList.item(b);
-					
-					String topic = seminar.getElementsByTagName("topic").item(0).getTextContent();
-					String location = seminar.getElementsByTagName("location").item(0).getTextContent();
-					String semDateTime = seminar.getElementsByTagName("seminarDateTime").item(0).getTextContent();
-					LocalDateTime seminarDateTime = LocalDateTime.of(Integer.parseInt(semDateTime.split(",")[0]), 
-							Integer.parseInt(semDateTime.split(",")[1]), Integer.parseInt(semDateTime.split(",")[2]), 
-							Integer.parseInt(semDateTime.split(",")[3]), Integer.parseInt(semDateTime.split(",")[4]));
-					
-					Seminar s = new Seminar(seminarDateTime, location, topic, researchGroup);
-					researchGroup.addOldSeminar(s);
-				}
+			} finally {
+				endWrite();
 			}
-		}catch (DPMSystemException sE) {
-			System.out.println(sE.getMessage());
-		} catch (Exception e) {
-			e.printStackTrace();
-		} 
+		}
 	}
-
-	@Override
-	public void addView(Viewer view) throws DPMSystemException {
-		if (registeredViews.contains(view)) {
-			throw new DPMSystemException("View already registered.");
+	
+	//Takes the write lock, unless the calling thread already holds it, as when a view notified of a change
+	//makes another, or the journal is replayed while the data store is opened.
+	private void beginWrite() {
+		if (writer == Thread.currentThread()) {
+			writeDepth++;
+			return;
 		}
-		else {
-			registeredViews.add(view);
+		waitingWriters.incrementAndGet();
+		long stamp;
+		try {
+			stamp = lock.writeLock();
+		} finally {
+			waitingWriters.decrementAndGet();
 		}
+		writer = Thread.currentThread();
+		writeStamp = stamp;
+		writeDepth = 1;
 	}
-
-	@Override
-	public void removeView(Viewer view) throws DPMSystemException {
-		boolean removed = false;
-		for (Viewer v : registeredViews) {
-			if (v.equals(view)) {
-				registeredViews.remove(view);
-				removed = true;
+	
+	private void endWrite() {
+		if (--writeDepth == 0) {
+			published = snapshot;
+			writer = null;
+			lock.unlockWrite(writeStamp);
+		}
+	}
+	
+	//Takes the read lock, unless the calling thread holds the write lock, returning 0 in that case.
+	//StampedLock lets a reader in ahead of a waiting writer, so under a steady stream of searches a change
+	//could wait indefinitely; readers therefore give way to a waiting writer first. They give way for a
+	//bounded time only, as the writer may itself be waiting for a read lock the calling thread holds.
+	private long beginRead() {
+		if (writer == Thread.currentThread()) {
+			return 0;
+		}
+		if (waitingWriters.get() > 0) {
+			long deadline = System.nanoTime() + WRITER_PRIORITY_NANOS;
+			while (waitingWriters.get() > 0 && System.nanoTime() < deadline) {
+				Thread.yield();
 			}
 		}
-		if (!removed) {
-			throw new DPMSystemException("View is not listed in registered views.");
+		return lock.readLock();
+	}
+	
+	private void endRead(long stamp) {
+		if (stamp != 0) {
+			lock.unlockRead(stamp);
 		}
 	}
-
-	@Override
-	public void notifyViews() {
-		//System.out.println("notify method called");
+	
+	/**
+	 * Carries out a read of the data store under the read lock.
+	 * 
+	 * @param read
+	 * @return The result of the read.
+	 */
+	<T> T read(Supplier<T> read) {
+		long stamp = beginRead();
+		try {
+			return read.get();
+		} finally {
+			endRead(stamp);
+		}
+	}
+	
+	//Carries out a short read without locking, repeating it under the read lock if a write overlapped it.
+	//The read may see the data store part way through a change, so it must have no side effects, and an
+	//exception thrown by it is taken as a sign of such a change. It must only look at structures that are
+	//safe to read while they are being changed, such as the hash indexes, as a plain HashMap caught part
+	//way through a resize may not even return.
+	private <T> T readOptimistically(Supplier<T> read) {
+		if (writer != Thread.currentThread()) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0) {
+				try {
+					T result = read.get();
+					if (lock.validate(stamp)) {
+						return result;
+					}
+				} catch (RuntimeException e) {
+					//Read again under the lock.
+				}
+			}
+		}
+		return read(read);
+	}
+	
+	/**
+	 * Adds research group to research group list.
+	 * 
+	 * @param group
+	 * @throws DPMSystemException If group is already in list, 
+	 * or if there are already 10 groups in the list.
+	 */
+	public void addResearchGroup(ResearchGroup group) throws DPMSystemException {
+		beginWrite();
+		try {
+			if (snapshot.getResearchGroups().contains(group)) {
+				throw new DPMSystemException("Group already in list.");
+			}
+			else if (snapshot.getResearchGroups().size() == 10) {
+				throw new DPMSystemException("There are already 10 groups registered to department.");
+			}
+			else {
+				snapshot = snapshot.withResearchGroups(snapshot.getResearchGroups().with(group));
+			}
+		
+			notifyViews();
+		} finally {
+			endWrite();
+		}
+	}
+	
+	/**
+	 * Removes research group from research group list.
+	 * 
+	 * @param group
+	 * @throws DPMSystemException If group is not in list.
+	 */
+	public void removeResearchGroup(ResearchGroup group) throws DPMSystemException {
+		beginWrite();
+		try {
+			int i = snapshot.getResearchGroups().indexOf(group);
+			if (i >= 0) {
+				snapshot = snapshot.withResearchGroups(snapshot.getResearchGroups().without(i));
+			}
+			else {
+				throw new DPMSystemException("Group not in list.");
+			}
+		
+			notifyViews();
+		} finally {
+			endWrite();
+		}
+	}
+	
+	/**
+	 * Adds academic staff member to academic staff list.
+	 * 
+	 * @param staff
+	 * @throws DPMSystemException If staff member is already in staff list.
+	 */
+	public void addAcademicStaff(AcademicStaff staff) throws DPMSystemException {
+		beginWrite();
+		try {
+			if (!bulkLoading && snapshot.getAcademicStaff().contains(staff)) {
+				throw new DPMSystemException("Staff member already exists in staff list.");
+			}
+			else {
+				snapshot = snapshot.withAcademicStaff(snapshot.getAcademicStaff().with(staff));
+			}
+		
+			notifyViews();
+		} finally {
+			endWrite();
+		}
+	}
+	
+	/**
+	 * Removes academic staff member from academic staff list.
+	 * 
+	 * @param staff
+	 * @throws DPMSystemException If staff member is not in staff list.
+	 */
+	public void removeAcademicStaff(AcademicStaff staff) throws DPMSystemException {
+		beginWrite();
+		try {
+			int i = snapshot.getAcademicStaff().indexOf(staff);
+			if (i >= 0) {
+				snapshot = snapshot.withAcademicStaff(snapshot.getAcademicStaff().without(i));
+			}
+			else {
+				throw new DPMSystemException("Staff member is not in staff list.");
+			}
+		
+			notifyViews();
+		} finally {
+			endWrite();
+		}
+	}
+	
+	/**
+	 * Adds research student to research student list.
+	 * 
+	 * @param student
+	 * @throws DPMSystemException If student is already listed.
+	 */
+	public void addResearchStudent(ResearchStudent student) throws DPMSystemException {
+		beginWrite();
+		try {
+			if (!bulkLoading && snapshot.getResearchStudents().contains(student)) {
+				throw new DPMSystemException("Student already in list.");
+			}
+			else {
+				snapshot = snapshot.withResearchStudents(snapshot.getResearchStudents().with(student));
+			}
+		
+			notifyViews();
+		} finally {
+			endWrite();
+		}
+	}
+	
+	/**
+	 * Removes research student from research student list.
+	 * 
+	 * @param student
+	 * @throws DPMSystemException If student is not in list.
+	 */
+	public void removeResearchStudent(ResearchStudent student) throws DPMSystemException {
+		beginWrite();
+		try {
+			int i = snapshot.getResearchStudents().indexOf(student);
+			if (i >= 0) {
+				snapshot = snapshot.withResearchStudents(snapshot.getResearchStudents().without(i));
+			}
+			else {
+				throw new DPMSystemException("Student is not in list.");
+			}
+		
+			notifyViews();
+		} finally {
+			endWrite();
+		}
+	}
+
+	/**
+	 * Starts a bulk load, during which publications, staff and students are added without checking
+	 * each one against the existing lists, and views are not notified of changes. Uniqueness is checked
+	 * once for the whole data store when the bulk load ends.
+	 */
+	public void beginBulkLoad() {
+		beginWrite();
+		try {
+			bulkLoading = true;
+		} finally {
+			endWrite();
+		}
+	}
+	
+	/**
+	 * Ends a bulk load, checking that no two publications share a publicationID or title and that no
+	 * staff member or student is listed twice, then notifies views once.
+	 * 
+	 * @throws DPMSystemException If a publication, staff member or student added during the bulk load
+	 * duplicates another.
+	 */
+	public void endBulkLoad() throws DPMSystemException {
+		beginWrite();
+		try {
+			if (!bulkLoading) {
+				return;
+			}
+			bulkLoading = false;
+		
+			try {
+				int publications = snapshot.getPublications().size();
+				if (publicationIDIndex.size() != publications || titleIndex.size() != publications) {
+					throw new DPMSystemException("Publication with this publicationID or title already exists");
+				}
+			
+				HashSet<String> emails = new HashSet<String>();
+				for (AcademicStaff a : snapshot.getAcademicStaff()) {
+					if (!emails.add(a.getEmailAddress())) {
+						throw new DPMSystemException("Staff member already exists in staff list.");
+					}
+				}
+				emails.clear();
+				for (ResearchStudent r : snapshot.getResearchStudents()) {
+					if (!emails.add(r.getEmailAddress())) {
+						throw new DPMSystemException("Student already in list.");
+					}
+				}
+			} finally {
+				notifyViews();
+			}
+		} finally {
+			endWrite();
+		}
+	}
+	
+	public boolean isBulkLoading() {
+		return bulkLoading;
+	}
+
+	public ArrayList<Viewer> getRegisteredViews() {
+		return registeredViews;
+	}
+
+	/**
+	 * Returns the current snapshot of the publication, research group, academic staff and research
+	 * student lists, without locking. The snapshot is not altered by later changes, so it can be read
+	 * at length without holding up writers.
+	 * 
+	 * @return Snapshot of the lists.
+	 */
+	public DataSnapshot getSnapshot() {
+		return current();
+	}
+	
+	//The thread holding the write lock sees its own changes, which others see once it lets go of the lock.
+	private DataSnapshot current() {
+		return writer == Thread.currentThread() ? snapshot : published;
+	}
+
+	/**
+	 * Returns the publication list as it stands, which cannot be altered and is not affected by later
+	 * changes. Publications are added and removed through addPublication and removePublication.
+	 * 
+	 * @return Publications held when the list was asked for.
+	 */
+	public List<Publication> getPublicationList() {
+		return current().getPublications();
+	}
+
+	/**
+	 * Returns the research group list as it stands, which cannot be altered and is not affected by later
+	 * changes.
+	 * 
+	 * @return Research groups held when the list was asked for.
+	 */
+	public List<ResearchGroup> getResearchGroupList() {
+		return current().getResearchGroups();
+	}
+
+	/**
+	 * Returns the academic staff list as it stands, which cannot be altered and is not affected by later
+	 * changes.
+	 * 
+	 * @return Academic staff held when the list was asked for.
+	 */
+	public List<AcademicStaff> getAcademicStaffList() {
+		return current().getAcademicStaff();
+	}
+
+	/**
+	 * Returns the research student list as it stands, which cannot be altered and is not affected by
+	 * later changes.
+	 * 
+	 * @return Research students held when the list was asked for.
+	 */
+	public List<ResearchStudent> getResearchStudentList() {
+		return current().getResearchStudents();
+	}
+
+	public SystemAdmin getSystemAdmin() {
+		return systemAdmin;
+	}
+
+	public void setSystemAdmin(SystemAdmin systemAdmin) {
+		beginWrite();
+		try {
+			this.systemAdmin = systemAdmin;
+		} finally {
+			endWrite();
+		}
+	}
+	
+	public MutationJournal getJournal() {
+		return journal;
+	}
+	
+	/**
+	 * Returns the sequence number of the last journal record contained in the data store.
+	 * 
+	 * @return Journal sequence number.
+	 */
+	public long getJournalSequence() {
+		return journalSequence;
+	}
+	
+	void setJournalSequence(long journalSequence) {
+		this.journalSequence = journalSequence;
+	}
+	
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+	
+	/**
+	 * Sets the number of journal records after which the journal is folded into a new snapshot.
+	 * 
+	 * @param checkpointInterval
+	 */
+	public void setCheckpointInterval(int checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+	}
+	
+	public PersistenceScheduler getPersistenceScheduler() {
+		return persistenceScheduler;
+	}
+	
+	/**
+	 * Sets the scheduler used to write journal records in the background. Without one, each
+	 * record is written to disk before persist returns.
+	 * 
+	 * @param persistenceScheduler
+	 */
+	public void setPersistenceScheduler(PersistenceScheduler persistenceScheduler) {
+		this.persistenceScheduler = persistenceScheduler;
+	}
+	
+	public int getSnapshotGenerations() {
+		return snapshots.getGenerations();
+	}
+	
+	/**
+	 * Sets the number of snapshots kept, including the current one, along with the journal
+	 * segments written after each of them.
+	 * 
+	 * @param generations
+	 */
+	public void setSnapshotGenerations(int generations) {
+		snapshots.setGenerations(generations);
+		binarySnapshots.setGenerations(generations);
+		journal.setGenerations(generations);
+	}
+	
+	public snapshotFormat getSnapshotFormat() {
+		return format;
+	}
+	
+	/**
+	 * Sets the format checkpoints are written in. Binary snapshots are the default, as they load far
+	 * faster; xml remains the format for importing and exporting data through loadData and saveData.
+	 * Sharded snapshots store each research group in a file of its own, so that a checkpoint only
+	 * rewrites the groups changed since the last one.
+	 * 
+	 * @param format
+	 */
+	public void setSnapshotFormat(snapshotFormat format) {
+		this.format = format;
+	}
+	
+	/**
+	 * Sets the directory sharded snapshots are written to.
+	 * 
+	 * @param directory
+	 */
+	public void setShardDirectory(File directory) {
+		shardedSnapshot = new ShardedSnapshot(directory);
+		dirtyGroups = null;
+	}
+	
+	public File getShardDirectory() {
+		return shardedSnapshot.getDirectory();
+	}
+	
+	/**
+	 * Notes which research groups were changed by a mutation that has been applied to the data store,
+	 * so that the next sharded checkpoint rewrites their shards.
+	 * 
+	 * @param record
+	 */
+	void markDirty(JournalRecord record) {
+		if (dirtyGroups == null) {
+			return;
+		}
+		
+		int[] groups = record.getAffectedGroups(this);
+		if (groups == null) {
+			dirtyGroups = null;
+		} else {
+			for (int g : groups) {
+				dirtyGroups.add(g);
+			}
+		}
+	}
+	
+	/**
+	 * Loads the newest snapshot of the data store that can be read, then replays the tail of the
+	 * mutation journal written since that snapshot was taken. Snapshots of every format are ranked by
+	 * the journal sequence number they were taken at, whatever the configured format, those in the
+	 * configured format coming first among snapshots taken at the same point. A snapshot that cannot be
+	 * read, or that the retained journal segments do not reach back to, is passed over for the next.
+	 * The data store is not opened if it cannot be brought up to the newest snapshot found, so that the
+	 * checkpoint taken on opening never writes older state over a newer snapshot.
+	 * 
+	 * @throws DPMSystemException If the journal cannot be read or replayed, or no snapshot can be
+	 * brought up to date.
+	 */
+	public void open() throws DPMSystemException {
+		groupLocks.lockDepartment();
+		beginWrite();
+		try {
+			ArrayList<SnapshotSource> sources = findSnapshots();
+			long newest = sources.isEmpty() ? 0 : sources.get(0).sequence;
+			SnapshotSource loaded = null;
+			long snapshotSequence = 0;
+			for (SnapshotSource source : sources) {
+				try {
+					load(source);
+					snapshotSequence = journalSequence;
+					journalSequence = journal.replay(this, snapshotSequence);
+					loaded = source;
+					break;
+				} catch (Exception e) {
+					System.out.println("Snapshot " + source.file.getName() + " could not be loaded: " + e.getMessage());
+				}
+			}
+			
+			try {
+				if (loaded == null) {
+					clearData();
+					dirtyGroups = null;
+					markClean();
+					journalSequence = journal.replay(this, 0);
+				}
+				if (journalSequence < newest) {
+					throw new DPMSystemException("The data store could not be recovered up to its newest snapshot, "
+							+ sources.get(0).file.getName() + ".");
+				}
+				boolean converting = loaded != null && loaded.format != format;
+				if (journalSequence > snapshotSequence || journal.getFile().length() > 0 || converting) {
+					checkpoint();
+				}
+			} catch (IOException e) {
+				throw new DPMSystemException("Could not read journal: " + e.getMessage());
+			}
+		} finally {
+			endWrite();
+			groupLocks.unlockDepartment();
+		}
+	}
+	
+	//A snapshot found on disk, with the journal sequence number it was taken at.
+	private static final class SnapshotSource {
+		private final snapshotFormat format;
+		private final File file;
+		private final long sequence;
+		
+		private SnapshotSource(snapshotFormat format, File file, long sequence) {
+			this.format = format;
+			this.file = file;
+			this.sequence = sequence;
+		}
+	}
+	
+	//Returns every snapshot on disk whose header can be read, newest first.
+	private ArrayList<SnapshotSource> findSnapshots() {
+		ArrayList<SnapshotSource> sources = new ArrayList<SnapshotSource>();
+		if (shardedSnapshot.exists()) {
+			addSnapshot(sources, snapshotFormat.SHARDED, shardedSnapshot.getManifestFile());
+		}
+		for (File f : binarySnapshots.getExistingGenerations()) {
+			addSnapshot(sources, snapshotFormat.BINARY, f);
+		}
+		for (File f : snapshots.getExistingGenerations()) {
+			addSnapshot(sources, snapshotFormat.XML, f);
+		}
+		
+		sources.sort(Comparator.comparingLong((SnapshotSource s) -> s.sequence).reversed()
+				.thenComparing(s -> s.format != format));
+		return sources;
+	}
+	
+	private void addSnapshot(ArrayList<SnapshotSource> sources, snapshotFormat format, File file) {
+		try {
+			long sequence = format == snapshotFormat.XML ? DataStorageReader.readJournalSequence(file)
+					: BinarySnapshotReader.readJournalSequence(file);
+			sources.add(new SnapshotSource(format, file, sequence));
+		} catch (Exception e) {
+			System.out.println("Snapshot " + file.getName() + " could not be read: " + e.getMessage());
+		}
+	}
+	
+	//Replaces the contents of the data store with the given snapshot, marked as unchanged.
+	private void load(SnapshotSource source) throws IOException, XMLStreamException, DPMSystemException {
+		dirtyGroups = null;
+		if (source.format == snapshotFormat.SHARDED) {
+			clearData();
+			beginBulkLoad();
+			try {
+				loadStatistics = shardedSnapshot.read(this);
+				endBulkLoad();
+			} finally {
+				bulkLoading = false;
+			}
+			dirtyGroups = new HashSet<Integer>();
+		} else if (source.format == snapshotFormat.BINARY) {
+			readBinary(source.file);
+		} else {
+			readData(source.file);
+		}
+		markClean();
+	}
+	
+	/**
+	 * Records a mutation that has been made to the data store by appending it to the journal. If a
+	 * persistence scheduler is set, the record is written to disk in the background; otherwise it is
+	 * written before this method returns, after the data store's lock has been released, so that
+	 * changes to other research groups are not held up while it is. Once the journal holds as many
+	 * records as the checkpoint interval, it is folded into a new snapshot, which if the calling thread
+	 * holds a research group's lock is put off until the thread lets go of it.
+	 * 
+	 * @param record
+	 * @throws DPMSystemException If the record cannot be written.
+	 */
+	public void persist(JournalRecord record) throws DPMSystemException {
+		boolean sync;
+		beginWrite();
+		try {
+			sync = appendToJournal(record);
+		} finally {
+			endWrite();
+		}
+		
+		if (sync) {
+			syncJournal();
+		}
+		checkpointIfDue();
+	}
+	
+	//Appends the record under the write lock, returning whether the caller must sync the journal once
+	//it has let go of the lock.
+	boolean appendToJournal(JournalRecord record) throws DPMSystemException {
+		beginWrite();
+		try {
+			try {
+				journal.append(record);
+			} catch (IOException e) {
+				throw new DPMSystemException("Could not write to journal: " + e.getMessage());
+			}
+			boolean sync = persistenceScheduler == null;
+			if (!sync) {
+				persistenceScheduler.markDirty();
+			}
+			journalSequence = record.getSequence();
+			markDirty(record);
+		
+			if (journal.getRecordCount() >= checkpointInterval) {
+				checkpointDue = true;
+			}
+			return sync;
+		} finally {
+			endWrite();
+		}
+	}
+	
+	void syncJournal() throws DPMSystemException {
+		try {
+			journal.sync();
+		} catch (IOException e) {
+			throw new DPMSystemException("Could not write to journal: " + e.getMessage());
+		}
+	}
+	
+	//Takes a checkpoint put off by persist, unless the calling thread holds a lock that comes after the
+	//department lock, in which case it is left for the next change.
+	void checkpointIfDue() throws DPMSystemException {
+		if (checkpointDue && !groupLocks.holdsGroupOnly() && writer != Thread.currentThread()) {
+			checkpoint();
+		}
+	}
+	
+	//Run as a thread lets go of its last research group. The change itself is already in the journal, so
+	//a checkpoint that fails here is reported and tried again after the next change.
+	private void checkpointOnRelease() {
+		try {
+			checkpointIfDue();
+		} catch (DPMSystemException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Writes a new generation of the data store's snapshot, or in the sharded format the shards of
+	 * the groups that have changed, then starts a new journal segment, as the records of the current
+	 * one are now contained in the snapshot. The checkpoint holds the department lock, as it reads
+	 * every research group; called by a thread holding only a group's lock, it is put off until the
+	 * thread lets go of it.
+	 * 
+	 * @throws DPMSystemException If the snapshot cannot be written or the journal cannot be rotated.
+	 */
+	public void checkpoint() throws DPMSystemException {
+		if (groupLocks.holdsGroupOnly()) {
+			checkpointDue = true;
+			return;
+		}
+		groupLocks.lockDepartment();
+		beginWrite();
+		try {
+			checkpointDue = false;
+			try {
+				if (format == snapshotFormat.SHARDED) {
+					shardedSnapshot.write(this, getDirtyGroups());
+					dirtyGroups = new HashSet<Integer>();
+				} else if (format == snapshotFormat.BINARY) {
+					IdentityHashMap<Publication, long[]> abstracts = new IdentityHashMap<Publication, long[]>();
+					binarySnapshots.write(out -> {
+						BinarySnapshotWriter writer = new BinarySnapshotWriter(out);
+						writer.setAbstractPositions(abstractCache != null ? abstracts : null);
+						writer.write(this);
+					});
+					bindAbstracts(binarySnapshots.getFile(), abstracts);
+				} else {
+					snapshots.write(out -> writeXML(out, true));
+				}
+				journal.reset();
+			} catch (IOException e) {
+				throw new DPMSystemException("Could not write snapshot: " + e.getMessage());
+			}
+			markClean();
+			if (abstractCache != null) {
+				abstractCache.closeUnused(snapshot.getPublications());
+			}
+		} finally {
+			endWrite();
+			groupLocks.unlockDepartment();
+		}
+	}
+	
+	/**
+	 * Sets the cache through which publication abstracts are left on disk when the data store is loaded
+	 * from a binary or sharded snapshot, each abstract being read when it is first asked for. Abstracts
+	 * are always held in memory when loading from xml. Must be set before the data store is opened.
+	 * 
+	 * @param abstractCache Cache of abstracts read from disk, or null to hold every abstract in memory.
+	 */
+	public void setAbstractCache(AbstractCache abstractCache) {
+		this.abstractCache = abstractCache;
+	}
+	
+	public AbstractCache getAbstractCache() {
+		return abstractCache;
+	}
+	
+	//Makes the publications just written to a binary snapshot read their abstracts from it.
+	void bindAbstracts(File file, Map<Publication, long[]> positions) throws IOException {
+		if (abstractCache == null || positions.isEmpty()) {
+			return;
+		}
+		
+		AbstractCache.Source source = abstractCache.open(file);
+		for (Map.Entry<Publication, long[]> p : positions.entrySet()) {
+			abstractCache.bind(p.getKey(), source, p.getValue()[0], (int) p.getValue()[1]);
+		}
+	}
+	
+	/**
+	 * Returns the IDs of the research groups that have changed since the last checkpoint, either
+	 * through a persisted mutation or through a change to the group, one of its members, their
+	 * publications, or its seminars.
+	 * 
+	 * @return Group IDs, or null if every group must be treated as changed.
+	 */
+	public Set<Integer> getDirtyGroups() {
+		long stamp = beginRead();
+		try {
+			if (dirtyGroups == null) {
+				return null;
+			}
+		
+			HashSet<Integer> dirty = new HashSet<Integer>(dirtyGroups);
+			for (ResearchGroup g : snapshot.getResearchGroups()) {
+				if (isDirty(g)) {
+					dirty.add(g.getGroupID());
+				}
+			}
+			return dirty;
+		} finally {
+			endRead(stamp);
+		}
+	}
+	
+	private boolean isDirty(ResearchGroup group) {
+		if (group.isDirty()) {
+			return true;
+		}
+		for (GroupMember m : group.getMembers()) {
+			if (m.isDirty()) {
+				return true;
+			}
+			if (m instanceof AcademicStaff) {
+				for (Publication p : ((AcademicStaff) m).getPublicationList()) {
+					if (p.isDirty()) {
+						return true;
+					}
+				}
+			}
+		}
+		for (Seminar s : group.getSeminarList()) {
+			if (s.isDirty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	//Marks every entity as unchanged, once a checkpoint contains them all.
+	private void markClean() {
+		for (ResearchGroup g : snapshot.getResearchGroups()) {
+			g.markClean();
+			for (GroupMember m : g.getMembers()) {
+				m.markClean();
+				if (m instanceof AcademicStaff) {
+					for (Publication p : ((AcademicStaff) m).getPublicationList()) {
+						p.markClean();
+					}
+				}
+			}
+			for (Seminar s : g.getSeminarList()) {
+				s.markClean();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the cache of serialized publications and seminars used when writing xml, through which
+	 * the cache's hit rate can be monitored.
+	 * 
+	 * @return Fragment cache.
+	 */
+	public FragmentCache getFragmentCache() {
+		return fragmentCache;
+	}
+	
+	/**
+	 * Begins a transaction, through which a change made in several steps is applied as one. The data
+	 * store's write lock is held until the transaction is committed or aborted, and views are not
+	 * notified of the steps. A thread changing a research group must lock it before beginning the
+	 * transaction.
+	 * 
+	 * @return The transaction.
+	 * @throws DPMSystemException If the calling thread already has a transaction in progress.
+	 */
+	public Transaction beginTransaction() throws DPMSystemException {
+		beginWrite();
+		if (transaction != null) {
+			endWrite();
+			throw new DPMSystemException("Transaction already in progress.");
+		}
+		transaction = new Transaction(this);
+		return transaction;
+	}
+	
+	void endTransaction() {
+		transaction = null;
+		endWrite();
+	}
+	
+	/**
+	 * Returns the locks through which controllers serialize their changes to each research group.
+	 * 
+	 * @return Group locks.
+	 */
+	public GroupLocks getGroupLocks() {
+		return groupLocks;
+	}
+	
+	/**
+	 * Writes any outstanding journal records, folds them into a snapshot and closes the journal.
+	 * 
+	 * @throws DPMSystemException
+	 */
+	public void close() throws DPMSystemException {
+		groupLocks.lockDepartment();
+		beginWrite();
+		try {
+			if (persistenceScheduler != null) {
+				persistenceScheduler.shutdown();
+			}
+			if (journal.getRecordCount() > 0) {
+				checkpoint();
+			}
+			try {
+				journal.close();
+			} catch (IOException e) {
+				throw new DPMSystemException("Could not close journal: " + e.getMessage());
+			}
+			if (abstractCache != null) {
+				abstractCache.close();
+			}
+		} finally {
+			endWrite();
+			groupLocks.unlockDepartment();
+		}
+	}
+	
+	/**
+	 * Saves system data to an xml file, allowing it to be recovered later. The file is
+	 * streamed out element by element rather than built up as a document in memory first,
+	 * and replaces any existing file atomically once it has been written in full. The research
+	 * groups written are those of the current snapshot, and each is locked only while it is
+	 * written, so the save does not hold up changes to the others.
+	 * 
+	 * @param file xml file
+	 */
+	public void saveData(File file) {
+		try {
+			new SnapshotGenerations(file, 1).write(out -> writeXML(out, false));
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		}
+	}
+	
+	//Writes the data store as xml. A checkpoint makes a pass over the fragment cache, dropping fragments
+	//of entities it no longer holds; a save, which may run alongside one, only reads and adds fragments.
+	private void writeXML(OutputStream out, boolean pass) throws IOException {
+		Writer text = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+		try {
+			if (pass) {
+				fragmentCache.beginPass();
+			}
+			DataStorageWriter writer = new DataStorageWriter(text, fragmentCache);
+			writer.write(this);
+			writer.close();
+			if (pass) {
+				fragmentCache.endPass();
+			}
+		} catch (XMLStreamException xse) {
+			throw new IOException(xse.getMessage(), xse);
+		}
+		text.flush();
+	}
+	
+	/**
+	 * Loads data from xml file. The file is read in a single pass, and the throughput of the load
+	 * is recorded and made available through getLoadStatistics.
+	 * 
+	 * @param file xml file written to previously
+	 */
+	public void loadData(File file) {
+		groupLocks.lockDepartment();
+		beginWrite();
+		try {
+			try {
+				readData(file);
+			} catch (DPMSystemException sE) {
+				System.out.println(sE.getMessage());
+			} catch (Exception e) {
+				e.printStackTrace();
+			} 
+		} finally {
+			endWrite();
+			groupLocks.unlockDepartment();
+		}
+	}
+	
+	//Empties all lists except the registered views list.
+	private void clearData() {
+		for (Publication p : snapshot.getPublications()) {
+			p.setListener(null);
+		}
+		for (PublicationIndex i : publicationIndexes) {
+			i.clear();
+		}
+		snapshot = snapshot.cleared();
+		journalSequence = 0;
+	}
+	
+	private void readData(File file) throws IOException, XMLStreamException, DPMSystemException {
+		clearData();
+		
+		long start = System.nanoTime();
+		beginBulkLoad();
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			DataStorageReader reader = new DataStorageReader(in);
+			reader.read(this);
+			endBulkLoad();
+			
+			loadStatistics = new LoadStatistics(file.length(), System.nanoTime() - start, reader.getGroupCount(), 
+					reader.getMemberCount(), reader.getPublicationCount(), reader.getSeminarCount());
+		} finally {
+			bulkLoading = false;
+		}
+	}
+	
+	private void readBinary(File file) throws IOException, DPMSystemException {
+		clearData();
+		
+		long start = System.nanoTime();
+		BinarySnapshotReader reader = new BinarySnapshotReader(file, abstractCache);
+		beginBulkLoad();
+		try {
+			reader.read(this);
+			endBulkLoad();
+		} finally {
+			bulkLoading = false;
+		}
+		
+		loadStatistics = new LoadStatistics(file.length(), System.nanoTime() - start, reader.getGroupCount(), 
+				reader.getMemberCount(), reader.getPublicationCount(), reader.getSeminarCount());
+	}
+	
+	/**
+	 * Returns the statistics recorded by the last successful load of a snapshot.
+	 * 
+	 * @return Load statistics, or null if nothing has been loaded.
+	 */
+	public LoadStatistics getLoadStatistics() {
+		return loadStatistics;
+	}
+
+	@Override
+	public void addView(Viewer view) throws DPMSystemException {
+		if (registeredViews.contains(view)) {
+			throw new DPMSystemException("View already registered.");
+		}
+		else {
+			registeredViews.add(view);
+		}
+	}
+
+	@Override
+	public void removeView(Viewer view) throws DPMSystemException {
+		boolean removed = false;
+		for (Viewer v : registeredViews) {
+			if (v.equals(view)) {
+				registeredViews.remove(view);
+				removed = true;
+			}
+		}
+		if (!removed) {
+			throw new DPMSystemException("View is not listed in registered views.");
+		}
+	}
+
+	@Override
+	public void notifyViews() {
+		//System.out.println("notify method called");
+		if (bulkLoading || (writer == Thread.currentThread() && transaction != null)) {
+			return;
+		}
 		for (Viewer v : registeredViews) {
 			v.update();
 		}
@@ -0,0 +1,381 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The DataStorageReader class rebuilds a data store from xml written by DataStorageWriter. The file is
+ * read in a single pass over the parser's events, each element being visited exactly once, so load time
+ * grows linearly with the size of the file.
+ *
+ */
+class DataStorageReader {
+	private XMLStreamReader xml;
+	private DataStorage dataStore;
+	private int groupCount;
+	private int memberCount;
+	private int publicationCount;
+	private int seminarCount;
+
+	public DataStorageReader(InputStream in) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		xml = factory.createXMLStreamReader(in, "UTF-8");
+	}
+
+	/**
+	 * Reads the sequence number of the last journal record contained in an xml file from its root element,
+	 * without reading the rest of the file.
+	 *
+	 * @param file
+	 * @return Journal sequence number, or 0 if the file does not record one.
+	 * @throws IOException If the file cannot be read.
+	 * @throws XMLStreamException If the file does not start with a dataStore element.
+	 */
+	static long readJournalSequence(File file) throws IOException, XMLStreamException {
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			XMLStreamReader xml = new DataStorageReader(in).xml;
+			try {
+				xml.nextTag();
+				xml.require(XMLStreamConstants.START_ELEMENT, null, "dataStore");
+				String journalSequence = xml.getAttributeValue(null, "journalSequence");
+				return journalSequence == null ? 0 : Long.parseLong(journalSequence);
+			} finally {
+				xml.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads the document into the given data store, which is expected to be empty.
+	 *
+	 * @param dataStore
+	 * @throws XMLStreamException If the document is not well formed.
+	 * @throws DPMSystemException Passed to it from the data store or the objects being rebuilt.
+	 */
+	public void read(DataStorage dataStore) throws XMLStreamException, DPMSystemException {
+		this.dataStore = dataStore;
+
+		xml.nextTag();
+		xml.require(XMLStreamConstants.START_ELEMENT, null, "dataStore");
+		String journalSequence = xml.getAttributeValue(null, "journalSequence");
+		if (journalSequence != null) {
+			dataStore.setJournalSequence(Long.parseLong(journalSequence));
+		}
+
+		while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			switch (xml.getLocalName()) {
+			case "systemAdministrator":
+				readSystemAdmin();
+				break;
+			case "researchGroupList":
+				while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					readGroup();
+				}
+				break;
+			default:
+				skipElement();
+			}
+		}
+
+		xml.close();
+	}
+
+	public int getGroupCount() {
+		return groupCount;
+	}
+
+	public int getMemberCount() {
+		return memberCount;
+	}
+
+	public int getPublicationCount() {
+		return publicationCount;
+	}
+
+	public int getSeminarCount() {
+		return seminarCount;
+	}
+
+	private void readSystemAdmin() throws XMLStreamException {
+		String name = null;
+		String officeNumber = null;
+		String phoneNumber = null;
+		String email = null;
+		String password = null;
+
+		while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			switch (xml.getLocalName()) {
+			case "name":
+				name = xml.getElementText();
+				break;
+			case "officeNumber":
+				officeNumber = xml.getElementText();
+				break;
+			case "phoneNumber":
+				phoneNumber = xml.getElementText();
+				break;
+			case "adminEmail":
+				email = xml.getElementText();
+				break;
+			case "password":
+				password = xml.getElementText();
+				break;
+			default:
+				skipElement();
+			}
+		}
+
+		dataStore.setSystemAdmin(new SystemAdmin(name, officeNumber, phoneNumber, email, password));
+	}
+
+	private void readGroup() throws XMLStreamException, DPMSystemException {
+		xml.require(XMLStreamConstants.START_ELEMENT, null, "researchGroup");
+		int groupID = Integer.parseInt(xml.getAttributeValue(null, "groupID"));
+
+		ResearchGroup group = new ResearchGroup(null, groupID);
+		dataStore.addResearchGroup(group);
+		groupCount++;
+
+		while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			switch (xml.getLocalName()) {
+			case "name":
+				group.setName(xml.getElementText());
+				break;
+			case "memberList":
+				while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					readMember(group);
+				}
+				break;
+			case "seminarCoordinator":
+				String coordinatorEmail = xml.getElementText();
+				for (GroupMember g : group.getMembers()) {
+					if (g.getEmailAddress().equals(coordinatorEmail) && g instanceof AcademicStaff) {
+						group.setSeminarCoordinator((AcademicStaff) g);
+						break;
+					}
+				}
+				break;
+			case "seminarList":
+				while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					readSeminar(group);
+				}
+				break;
+			default:
+				skipElement();
+			}
+		}
+	}
+
+	private void readMember(ResearchGroup group) throws XMLStreamException, DPMSystemException {
+		String name = null;
+		String title = null;
+		String email = null;
+		String type = null;
+		String studentID = null;
+		String password = null;
+		String isCoordinator = null;
+		ArrayList<Publication> publications = new ArrayList<Publication>();
+
+		while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			switch (xml.getLocalName()) {
+			case "name":
+				name = xml.getElementText();
+				break;
+			case "title":
+				title = xml.getElementText();
+				break;
+			case "memberEmail":
+				email = xml.getElementText();
+				break;
+			case "memberType":
+				type = xml.getElementText();
+				break;
+			case "studentID":
+				studentID = xml.getElementText();
+				break;
+			case "password":
+				password = xml.getElementText();
+				break;
+			case "isCoordinator":
+				isCoordinator = xml.getElementText();
+				break;
+			case "publicationList":
+				while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					publications.add(readPublication());
+				}
+				break;
+			default:
+				skipElement();
+			}
+		}
+
+		if ("STUDENT".equals(type)) {
+			ResearchStudent student = new ResearchStudent(name, title, group, email,
+					GroupMember.memberType.STUDENT, studentID);
+
+			group.addMember(student);
+			dataStore.addResearchStudent(student);
+		} else if ("STAFF".equals(type)) {
+			AcademicStaff staff = new AcademicStaff(name, title, group, email,
+					GroupMember.memberType.STAFF, password);
+			group.addMember(staff);
+			dataStore.addAcademicStaff(staff);
+
+			if ("true".equals(isCoordinator)) {
+				staff.setCoordinator(true);
+			}
+
+			for (Publication p : publications) {
+				staff.addPublication(p);
+				dataStore.addPublication(p);
+			}
+		}
+		memberCount++;
+	}
+
+	private Publication readPublication() throws XMLStreamException {
+		String publicationID = xml.getAttributeValue(null, "publicationID");
+		String title = null;
+		ArrayList<String> authorNames = new ArrayList<String>();
+		String aBstract = null;
+		int groupID = 0;
+		String staffEmail = null;
+		String type = null;
+		LocalDate publicationDate = null;
+		String journalName = null;
+		int pageNumber = 0;
+		String conferenceName = null;
+		String conferenceLocation = null;
+		LocalDate conferenceDate = null;
+		String iSBN = null;
+		String publisher = null;
+
+		while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			switch (xml.getLocalName()) {
+			case "title":
+				title = xml.getElementText();
+				break;
+			case "authorNames":
+				while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					authorNames.add(xml.getElementText());
+				}
+				break;
+			case "abstract":
+				aBstract = xml.getElementText();
+				break;
+			case "groupID":
+				groupID = Integer.parseInt(xml.getElementText());
+				break;
+			case "staffEmail":
+				staffEmail = xml.getElementText();
+				break;
+			case "type":
+				type = xml.getElementText();
+				break;
+			case "publicationDate":
+				publicationDate = parseDate(xml.getElementText());
+				break;
+			case "journalName":
+				journalName = xml.getElementText();
+				break;
+			case "pageNumber":
+				pageNumber = Integer.parseInt(xml.getElementText());
+				break;
+			case "conferenceName":
+				conferenceName = xml.getElementText();
+				break;
+			case "conferenceLocation":
+				conferenceLocation = xml.getElementText();
+				break;
+			case "conferenceDate":
+				conferenceDate = parseDate(xml.getElementText());
+				break;
+			case "ISBN":
+				iSBN = xml.getElementText();
+				break;
+			case "publisher":
+				publisher = xml.getElementText();
+				break;
+			default:
+				skipElement();
+			}
+		}
+		publicationCount++;
+
+		if ("JOURNALPAPER".equals(type)) {
+			return new JournalPaper(publicationID, title, authorNames, aBstract, groupID, staffEmail,
+					Publication.publicationType.JOURNALPAPER, publicationDate, journalName, pageNumber);
+		} else if ("CONFERENCEPAPER".equals(type)) {
+			return new ConferencePaper(publicationID, title, authorNames, aBstract, groupID, staffEmail,
+					Publication.publicationType.CONFERENCEPAPER, publicationDate, conferenceName,
+					conferenceLocation, conferenceDate);
+		} else if ("BOOK".equals(type)) {
+			return new Book(publicationID, title, authorNames, aBstract, groupID, staffEmail,
+					Publication.publicationType.BOOK, publicationDate, iSBN, publisher);
+		} else {
+			throw new XMLStreamException("Unknown publication type: " + type, xml.getLocation());
+		}
+	}
+
+	private void readSeminar(ResearchGroup group) throws XMLStreamException, DPMSystemException {
+		String topic = null;
+		String location = null;
+		LocalDateTime dateTime = null;
+
+		while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			switch (xml.getLocalName()) {
+			case "topic":
+				topic = xml.getElementText();
+				break;
+			case "location":
+				location = xml.getElementText();
+				break;
+			case "seminarDateTime":
+				dateTime = parseDateTime(xml.getElementText());
+				break;
+			default:
+				skipElement();
+			}
+		}
+
+		group.addOldSeminar(new Seminar(dateTime, location, topic, group));
+		seminarCount++;
+	}
+
+	//Skips over the current element and everything nested within it.
+	private void skipElement() throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	static LocalDate parseDate(String date) {
+		String[] parts = date.split(",");
+		return LocalDate.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+	}
+
+	static LocalDateTime parseDateTime(String dateTime) {
+		String[] parts = dateTime.split(",");
+		return LocalDateTime.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+				Integer.parseInt(parts[3]), Integer.parseInt(parts[4]));
+	}
+}
@@ -0,0 +1,251 @@
+package model;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * The DataStorageWriter class streams the contents of a data store to xml, one element at a time,
+ * so that memory use stays flat however large the data store grows. The schema written is the same
+ * dataStore schema read back by DataStorage.loadData. Given a fragment cache, publications and seminars
+ * that have not changed since the last save are copied from the cache rather than encoded again.
+ * Each research group is written under its lock, so that it is not changed part way through.
+ *
+ */
+class DataStorageWriter {
+	private Writer out;
+	private XMLStreamWriter xml;
+	private FragmentCache cache;
+
+	/**
+	 * @param out Writer encoding characters as UTF-8.
+	 * @param cache Cache of serialized fragments, or null to encode every entity.
+	 * @throws XMLStreamException
+	 */
+	public DataStorageWriter(Writer out, FragmentCache cache) throws XMLStreamException {
+		this.out = out;
+		this.xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+		this.cache = cache;
+	}
+
+	/**
+	 * Writes the whole data store as a single xml document.
+	 *
+	 * @param dataStore
+	 * @throws XMLStreamException If the underlying stream cannot be written to.
+	 */
+	public void write(DataStorage dataStore) throws XMLStreamException {
+		xml.writeStartDocument("UTF-8", "1.0");
+		xml.writeStartElement("dataStore");
+		xml.writeAttribute("journalSequence", String.valueOf(dataStore.getJournalSequence()));
+
+		writeSystemAdmin(dataStore.getSystemAdmin());
+
+		//Research group list.
+		xml.writeStartElement("researchGroupList");
+		GroupLocks locks = dataStore.getGroupLocks();
+		for (ResearchGroup g : dataStore.getResearchGroupList()) {
+			locks.lockGroup(g);
+			try {
+				writeGroup(g);
+			} finally {
+				locks.unlockGroup(g);
+			}
+		}
+		xml.writeEndElement();
+
+		xml.writeEndElement();
+		xml.writeEndDocument();
+		xml.flush();
+	}
+
+	/**
+	 * Flushes and closes the xml writer, leaving the underlying stream open.
+	 *
+	 * @throws XMLStreamException
+	 */
+	public void close() throws XMLStreamException {
+		xml.flush();
+		xml.close();
+	}
+
+	private void writeSystemAdmin(SystemAdmin systemAdmin) throws XMLStreamException {
+		xml.writeStartElement("systemAdministrator");
+
+		if (systemAdmin != null) {
+			writeElement("name", systemAdmin.getName());
+			writeElement("officeNumber", systemAdmin.getOfficeNumber());
+			writeElement("phoneNumber", systemAdmin.getPhoneNumber());
+			writeElement("adminEmail", systemAdmin.getEmailAddress());
+			writeElement("password", systemAdmin.getPassword());
+		}
+
+		xml.writeEndElement();
+	}
+
+	private void writeGroup(ResearchGroup g) throws XMLStreamException {
+		xml.writeStartElement("researchGroup");
+		xml.writeAttribute("groupID", String.valueOf(g.getGroupID()));
+
+		writeElement("name", g.getName());
+
+		//Member list.
+		xml.writeStartElement("memberList");
+		for (GroupMember m : g.getMembers()) {
+			writeMember(m);
+		}
+		xml.writeEndElement();
+
+		AcademicStaff coordinator = g.getSeminarCoordinator();
+		writeElement("seminarCoordinator", coordinator != null ? coordinator.getEmailAddress() : "");
+
+		//Seminar list.
+		xml.writeStartElement("seminarList");
+		for (Seminar s : g.getSeminarList()) {
+			writeFragment(s);
+		}
+		xml.writeEndElement();
+
+		xml.writeEndElement();
+	}
+
+	private void writeMember(GroupMember m) throws XMLStreamException {
+		xml.writeStartElement("member");
+
+		writeElement("name", m.getName());
+		writeElement("title", m.getTitle());
+		writeElement("memberEmail", m.getEmailAddress());
+		writeElement("memberType", String.valueOf(m.getType()));
+
+		if (m.getType() == GroupMember.memberType.STUDENT) {
+			ResearchStudent student = (ResearchStudent) m;
+
+			writeElement("studentID", student.getStudentID());
+		} else if (m.getType() == GroupMember.memberType.STAFF) {
+			AcademicStaff staff = (AcademicStaff) m;
+
+			writeElement("password", staff.getPassword());
+			writeElement("isCoordinator", String.valueOf(staff.coordinator()));
+
+			//Publication list.
+			xml.writeStartElement("publicationList");
+			for (Publication p : staff.getPublicationList()) {
+				writeFragment(p);
+			}
+			xml.writeEndElement();
+		}
+
+		xml.writeEndElement();
+	}
+
+	private void writePublication(Publication p) throws XMLStreamException {
+		xml.writeStartElement("publication");
+		xml.writeAttribute("publicationID", p.getPublicationID());
+
+		writeElement("title", p.getTitle());
+
+		xml.writeStartElement("authorNames");
+		for (String n : p.getAuthorNames()) {
+			writeElement("name", n);
+		}
+		xml.writeEndElement();
+
+		writeElement("abstract", p.getaBstract());
+		writeElement("groupID", String.valueOf(p.getGroupID()));
+		writeElement("staffEmail", p.getStaffEmail());
+		writeElement("type", String.valueOf(p.getPublicationType()));
+		writeElement("publicationDate", formatDate(p.getPublicationDate()));
+
+		if (p.getPublicationType() == Publication.publicationType.JOURNALPAPER) {
+			JournalPaper journal = (JournalPaper) p;
+
+			writeElement("journalName", journal.getJournalName());
+			writeElement("pageNumber", String.valueOf(journal.getPageNumber()));
+		}
+		else if (p.getPublicationType() == Publication.publicationType.CONFERENCEPAPER) {
+			ConferencePaper conference = (ConferencePaper) p;
+
+			writeElement("conferenceName", conference.getConferenceName());
+			writeElement("conferenceLocation", conference.getConferenceLocation());
+			writeElement("conferenceDate", formatDate(conference.getConferenceDate()));
+		}
+		else if (p.getPublicationType() == Publication.publicationType.BOOK) {
+			Book book = (Book) p;
+
+			writeElement("ISBN", book.getiSBN());
+			writeElement("publisher", book.getPublisher());
+		}
+
+		xml.writeEndElement();
+	}
+
+	private void writeSeminar(Seminar s) throws XMLStreamException {
+		xml.writeStartElement("seminar");
+
+		writeElement("topic", s.getTopic());
+		writeElement("location", s.getLocation());
+		writeElement("seminarDateTime", formatDateTime(s.getDateTime()));
+
+		xml.writeEndElement();
+	}
+
+	//Writes a publication or seminar, from the fragment cache if it has not changed since it was cached.
+	private void writeFragment(TrackedEntity entity) throws XMLStreamException {
+		if (cache == null) {
+			writeEntity(entity);
+			return;
+		}
+
+		String fragment = cache.get(entity);
+		if (fragment == null) {
+			long modCount = entity.getModCount();
+			StringWriter encoded = new StringWriter();
+			DataStorageWriter writer = new DataStorageWriter(encoded, null);
+			writer.writeEntity(entity);
+			writer.close();
+			fragment = encoded.toString();
+			cache.put(entity, modCount, fragment);
+		}
+
+		//An empty write closes any start tag the xml writer is holding open, so the fragment lands after it.
+		xml.writeCharacters("");
+		xml.flush();
+		try {
+			out.write(fragment);
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	private void writeEntity(TrackedEntity entity) throws XMLStreamException {
+		if (entity instanceof Publication) {
+			writePublication((Publication) entity);
+		} else {
+			writeSeminar((Seminar) entity);
+		}
+	}
+
+	//Writes a single element containing only text.
+	private void writeElement(String name, String text) throws XMLStreamException {
+		xml.writeStartElement(name);
+		if (text != null) {
+			xml.writeCharacters(text);
+		}
+		xml.writeEndElement();
+	}
+
+	static String formatDate(LocalDate date) {
+		return "" + date.getYear() + "," + date.getMonthValue() + "," + date.getDayOfMonth();
+	}
+
+	static String formatDateTime(LocalDateTime dateTime) {
+		return "" + dateTime.getYear() + "," + dateTime.getMonthValue() + "," + dateTime.getDayOfMonth() + "," +
+				dateTime.getHour() + "," + dateTime.getMinute();
+	}
+}
@@ -0,0 +1,237 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * The FacetCounts class keeps the number of publications of each type, from each year, in each research
+ * group and by each author, updating the counts as publications are added, removed and edited rather
+ * than counting them again when asked. Types are counted in an array indexed by ordinal and years in an
+ * array indexed from the earliest year seen, so each facet is read in time proportional to its number of
+ * values. Publications without a date are not counted by year.
+ *
+ * Authors are counted under their normalized names, the keys each publication was counted under being
+ * remembered, as in AuthorIndex, so it is removed correctly even if its author list was altered in place.
+ * The counts are read outside the data store's lock, so the methods are synchronized.
+ *
+ */
+public class FacetCounts implements PublicationIndex {
+	private int total;
+	private int[] typeCounts;
+	private int firstYear;
+	private int[] yearCounts;
+	private HashMap<Integer, int[]> groupCounts;
+	private HashMap<String, Author> authorCounts;
+	private IdentityHashMap<Publication, String[]> indexedKeys;
+
+	public FacetCounts() {
+		clear();
+	}
+
+	private static class Author {
+		private String name;
+		private int count;
+	}
+
+	@Override
+	public synchronized void add(Publication publication) {
+		update(publication, 1);
+
+		LinkedHashMap<String, String> authors = new LinkedHashMap<String, String>();
+		if (publication.getAuthorNames() != null) {
+			for (String author : publication.getAuthorNames()) {
+				String key = AuthorIndex.normalize(author);
+				if (!key.isEmpty() && !authors.containsKey(key)) {
+					authors.put(key, author);
+				}
+			}
+		}
+		for (Map.Entry<String, String> e : authors.entrySet()) {
+			Author author = authorCounts.get(e.getKey());
+			if (author == null) {
+				author = new Author();
+				author.name = e.getValue();
+				authorCounts.put(e.getKey(), author);
+			}
+			author.count++;
+		}
+		indexedKeys.put(publication, authors.keySet().toArray(new String[authors.size()]));
+	}
+
+	@Override
+	public synchronized void remove(Publication publication) {
+		String[] keys = indexedKeys.remove(publication);
+		if (keys == null) {
+			return;
+		}
+		update(publication, -1);
+
+		for (String key : keys) {
+			Author author = authorCounts.get(key);
+			if (--author.count == 0) {
+				authorCounts.remove(key);
+			}
+		}
+	}
+
+	//Adjusts the type, year and group counts of the publication by the given amount.
+	private void update(Publication publication, int change) {
+		total += change;
+		if (publication.getPublicationType() != null) {
+			typeCounts[publication.getPublicationType().ordinal()] += change;
+		}
+
+		if (publication.getPublicationDate() != null) {
+			int year = publication.getPublicationDate().getYear();
+			if (yearCounts.length == 0) {
+				firstYear = year;
+				yearCounts = new int[1];
+			} else if (year < firstYear) {
+				int[] counts = new int[yearCounts.length + firstYear - year];
+				System.arraycopy(yearCounts, 0, counts, firstYear - year, yearCounts.length);
+				yearCounts = counts;
+				firstYear = year;
+			} else if (year - firstYear >= yearCounts.length) {
+				yearCounts = Arrays.copyOf(yearCounts, year - firstYear + 1);
+			}
+			yearCounts[year - firstYear] += change;
+		}
+
+		int[] group = groupCounts.get(publication.getGroupID());
+		if (group == null) {
+			group = new int[1];
+			groupCounts.put(publication.getGroupID(), group);
+		}
+		group[0] += change;
+		if (group[0] == 0) {
+			groupCounts.remove(publication.getGroupID());
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		total = 0;
+		typeCounts = new int[Publication.publicationType.values().length];
+		firstYear = 0;
+		yearCounts = new int[0];
+		groupCounts = new HashMap<Integer, int[]>();
+		authorCounts = new HashMap<String, Author>();
+		indexedKeys = new IdentityHashMap<Publication, String[]>();
+	}
+
+	/**
+	 * Returns the number of publications counted.
+	 *
+	 * @return Number of publications.
+	 */
+	public synchronized int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Returns the number of publications of each type.
+	 *
+	 * @return Count of every type, including those with no publications.
+	 */
+	public synchronized EnumMap<Publication.publicationType, Integer> getTypeCounts() {
+		EnumMap<Publication.publicationType, Integer> counts =
+				new EnumMap<Publication.publicationType, Integer>(Publication.publicationType.class);
+		for (Publication.publicationType type : Publication.publicationType.values()) {
+			counts.put(type, typeCounts[type.ordinal()]);
+		}
+		return counts;
+	}
+
+	public synchronized int getTypeCount(Publication.publicationType type) {
+		return typeCounts[type.ordinal()];
+	}
+
+	/**
+	 * Returns the number of publications from each year.
+	 *
+	 * @return Counts of the years with publications, earliest first.
+	 */
+	public synchronized TreeMap<Integer, Integer> getYearCounts() {
+		TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+		for (int i=0; i < yearCounts.length; i++) {
+			if (yearCounts[i] > 0) {
+				counts.put(firstYear + i, yearCounts[i]);
+			}
+		}
+		return counts;
+	}
+
+	public synchronized int getYearCount(int year) {
+		int i = year - firstYear;
+		return i >= 0 && i < yearCounts.length ? yearCounts[i] : 0;
+	}
+
+	/**
+	 * Returns the number of publications in each research group.
+	 *
+	 * @return Counts of the groups with publications, by groupID.
+	 */
+	public synchronized TreeMap<Integer, Integer> getGroupCounts() {
+		TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+		for (Map.Entry<Integer, int[]> e : groupCounts.entrySet()) {
+			counts.put(e.getKey(), e.getValue()[0]);
+		}
+		return counts;
+	}
+
+	public synchronized int getGroupCount(int groupID) {
+		int[] group = groupCounts.get(groupID);
+		return group == null ? 0 : group[0];
+	}
+
+	/**
+	 * Returns the number of publications listing the given author.
+	 *
+	 * @param author Author name, normalized before it is looked up.
+	 * @return Number of publications.
+	 */
+	public synchronized int getAuthorCount(String author) {
+		Author a = authorCounts.get(AuthorIndex.normalize(author));
+		return a == null ? 0 : a.count;
+	}
+
+	/**
+	 * Returns the authors listed by the most publications. Unlike the other facets, this looks at every
+	 * author, keeping only the best as it goes.
+	 *
+	 * @param limit Maximum number of authors.
+	 * @return Author names, as first seen, with their counts, the most prolific first.
+	 */
+	public synchronized LinkedHashMap<String, Integer> getTopAuthors(int limit) {
+		Comparator<Author> order = new Comparator<Author>() {
+			@Override
+			public int compare(Author a, Author b) {
+				return a.count != b.count ? Integer.compare(a.count, b.count) : b.name.compareTo(a.name);
+			}
+		};
+		PriorityQueue<Author> best = new PriorityQueue<Author>(order);
+		for (Author a : authorCounts.values()) {
+			if (best.size() < limit) {
+				best.add(a);
+			} else if (limit > 0 && order.compare(a, best.peek()) > 0) {
+				best.poll();
+				best.add(a);
+			}
+		}
+
+		Author[] sorted = best.toArray(new Author[best.size()]);
+		Arrays.sort(sorted, order.reversed());
+		LinkedHashMap<String, Integer> counts = new LinkedHashMap<String, Integer>();
+		for (Author a : sorted) {
+			counts.put(a.name, a.count);
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,112 @@
+package model;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+/**
+ * The FragmentCache class holds the serialized xml of each publication and seminar, as of the
+ * modification count it had when serialized. When the data store is next saved, entities that have not
+ * changed since are written straight from the cache, and only changed entities are encoded again.
+ * Entities that were not written during a save, having been removed from the data store, are evicted.
+ *
+ */
+public class FragmentCache {
+	private static class Fragment {
+		private long modCount;
+		private long pass;
+		private String xml;
+	}
+
+	private IdentityHashMap<TrackedEntity, Fragment> fragments;
+	private long pass;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public FragmentCache() {
+		fragments = new IdentityHashMap<TrackedEntity, Fragment>();
+	}
+
+	/**
+	 * Returns the cached xml of the entity, if it has not been modified since it was cached.
+	 *
+	 * @param entity
+	 * @return Cached xml, or null if there is none or the entity has since been modified.
+	 */
+	public synchronized String get(TrackedEntity entity) {
+		Fragment fragment = fragments.get(entity);
+		if (fragment != null && fragment.modCount == entity.getModCount()) {
+			fragment.pass = pass;
+			hits++;
+			return fragment.xml;
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * Caches the xml of the entity as of the given modification count, read before the entity was
+	 * encoded, so that xml encoded while the entity was being changed is not taken as up to date.
+	 *
+	 * @param entity
+	 * @param modCount Modification count of the entity before it was encoded.
+	 * @param xml
+	 */
+	public synchronized void put(TrackedEntity entity, long modCount, String xml) {
+		Fragment fragment = new Fragment();
+		fragment.modCount = modCount;
+		fragment.pass = pass;
+		fragment.xml = xml;
+		fragments.put(entity, fragment);
+	}
+
+	/**
+	 * Starts a save, after which every entity written is marked as still present in the data store.
+	 */
+	public synchronized void beginPass() {
+		pass++;
+	}
+
+	/**
+	 * Ends a save, evicting the fragments of entities that were not written during it.
+	 */
+	public synchronized void endPass() {
+		Iterator<Fragment> it = fragments.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().pass != pass) {
+				it.remove();
+				evictions++;
+			}
+		}
+	}
+
+	public synchronized int size() {
+		return fragments.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the proportion of lookups that were served from the cache.
+	 *
+	 * @return Hit rate between 0 and 1.
+	 */
+	public synchronized double getHitRate() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	public synchronized void clear() {
+		fragments.clear();
+	}
+}
@@ -0,0 +1,760 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The FullTextIndex class is an inverted index over the words of publication titles and abstracts,
+ * answering queries ranked by BM25.
+ *
+ * Each publication is given a document number when indexed. For every word, the index keeps a posting
+ * list of the documents containing it, with the positions the word occurs at, compressed as variable
+ * length deltas into a single byte array. Document numbers only ever increase, so postings are always
+ * appended: an edited publication is indexed again under a new number, and the old number is left as
+ * a tombstone until there are more tombstones than live documents and the index is rebuilt. Each word
+ * also keeps the number of live documents containing it, which is what its weight in the ranking is
+ * worked out from, so that tombstones do not skew the scores between rebuilds.
+ *
+ * Queries are words, which must all appear, "quoted phrases", and the operators AND, OR and NOT, with
+ * parentheses for grouping. A word preceded by a minus sign must not appear.
+ *
+ * The index is searched outside the data store's lock, so its methods are synchronized.
+ *
+ */
+public class FullTextIndex implements PublicationIndex {
+	private static final float K1 = 1.2f;
+	private static final float B = 0.75f;
+	//Positions left between the title and the abstract, so a phrase cannot match across the two.
+	private static final int FIELD_GAP = 8;
+	private static final int[] NO_DOCS = new int[0];
+
+	private HashMap<String, Postings> terms;
+	private IdentityHashMap<Publication, Integer> docNumbers;
+	private Publication[] docs;
+	private int[] docLengths;
+	//The posting lists each document was added to, so their live counts can be reduced when it is removed.
+	private Postings[][] docTerms;
+	private int docCount;
+	private int liveDocs;
+	private long totalLength;
+
+	public FullTextIndex() {
+		clear();
+	}
+
+	@Override
+	public synchronized void add(Publication publication) {
+		LinkedHashMap<String, Positions> words = new LinkedHashMap<String, Positions>();
+		int length = addWords(publication.getTitle(), 0, words);
+		length = addWords(publication.getaBstract(), length + FIELD_GAP, words);
+
+		int doc = docCount++;
+		if (doc == docs.length) {
+			docs = Arrays.copyOf(docs, doc * 2);
+			docLengths = Arrays.copyOf(docLengths, doc * 2);
+			docTerms = Arrays.copyOf(docTerms, doc * 2);
+		}
+		docs[doc] = publication;
+		docNumbers.put(publication, doc);
+
+		Postings[] added = new Postings[words.size()];
+		int tokens = 0;
+		int t = 0;
+		for (Map.Entry<String, Positions> w : words.entrySet()) {
+			Postings postings = terms.get(w.getKey());
+			if (postings == null) {
+				postings = new Postings();
+				terms.put(w.getKey(), postings);
+			}
+			postings.append(doc, w.getValue());
+			added[t++] = postings;
+			tokens += w.getValue().size;
+		}
+		docLengths[doc] = tokens;
+		docTerms[doc] = added;
+		totalLength += tokens;
+		liveDocs++;
+	}
+
+	@Override
+	public synchronized void remove(Publication publication) {
+		Integer doc = docNumbers.remove(publication);
+		if (doc == null) {
+			return;
+		}
+
+		docs[doc] = null;
+		for (Postings postings : docTerms[doc]) {
+			postings.liveFreq--;
+		}
+		docTerms[doc] = null;
+		totalLength -= docLengths[doc];
+		liveDocs--;
+
+		if (docCount - liveDocs > Math.max(1024, liveDocs)) {
+			rebuild();
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		terms = new HashMap<String, Postings>();
+		docNumbers = new IdentityHashMap<Publication, Integer>();
+		docs = new Publication[64];
+		docLengths = new int[64];
+		docTerms = new Postings[64][];
+		docCount = 0;
+		liveDocs = 0;
+		totalLength = 0;
+	}
+
+	//Indexes the live publications again under new document numbers, dropping tombstones.
+	private void rebuild() {
+		ArrayList<Publication> live = new ArrayList<Publication>(liveDocs);
+		for (int d=0; d < docCount; d++) {
+			if (docs[d] != null) {
+				live.add(docs[d]);
+			}
+		}
+		clear();
+		for (Publication p : live) {
+			add(p);
+		}
+	}
+
+	//Adds the words of a field to the map of each word's positions, returning the position after the last.
+	private int addWords(String text, int position, Map<String, Positions> words) {
+		for (String word : tokenize(text)) {
+			Positions positions = words.get(word);
+			if (positions == null) {
+				positions = new Positions();
+				words.put(word, positions);
+			}
+			positions.add(position++);
+		}
+		return position;
+	}
+
+	/**
+	 * Splits text into words of letters and digits, in lower case.
+	 *
+	 * @param text
+	 * @return Words in the order they appear, empty if the text is null.
+	 */
+	public static List<String> tokenize(String text) {
+		ArrayList<String> words = new ArrayList<String>();
+		if (text == null) {
+			return words;
+		}
+
+		int start = -1;
+		for (int i=0; i <= text.length(); i++) {
+			if (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+				if (start < 0) {
+					start = i;
+				}
+			} else if (start >= 0) {
+				words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Returns the publications matching the query, most relevant first.
+	 *
+	 * @param query
+	 * @param limit Maximum number of results.
+	 * @return Matching publications and their scores.
+	 * @throws DPMSystemException If the query is empty or malformed.
+	 */
+	public synchronized List<SearchHit> search(String query, int limit) throws DPMSystemException {
+		QueryParser parser = new QueryParser(query);
+		Node root = parser.parse();
+		int[] matches = root.match(this);
+		if (matches.length == 0 || limit <= 0) {
+			return Collections.emptyList();
+		}
+
+		float[] scores = new float[matches.length];
+		float averageLength = liveDocs == 0 ? 1 : (float) totalLength / liveDocs;
+		for (String term : parser.scoredTerms) {
+			Postings postings = terms.get(term);
+			if (postings == null) {
+				continue;
+			}
+
+			//Counted over live documents only; never below zero, so a match cannot lower a score.
+			float idf = Math.max(0, (float) Math.log(1 + (liveDocs - postings.liveFreq + 0.5)
+					/ (postings.liveFreq + 0.5)));
+			Cursor cursor = new Cursor(postings);
+			for (int i=0; i < matches.length; i++) {
+				if (cursor.advance(matches[i])) {
+					float tf = cursor.freq;
+					float norm = K1 * (1 - B + B * docLengths[matches[i]] / averageLength);
+					scores[i] += idf * tf * (K1 + 1) / (tf + norm);
+				}
+			}
+		}
+
+		int[] order = top(matches, scores, limit);
+		ArrayList<SearchHit> hits = new ArrayList<SearchHit>(order.length);
+		for (int i : order) {
+			hits.add(new SearchHit(docs[matches[i]], scores[i]));
+		}
+		return hits;
+	}
+
+	//Returns the indexes of the highest scores, highest first, ties going to the earlier document.
+	private static int[] top(int[] matches, float[] scores, int limit) {
+		int k = Math.min(limit, matches.length);
+		int[] heap = new int[k];
+		int size = 0;
+		for (int i=0; i < matches.length; i++) {
+			if (size < k) {
+				heap[size] = i;
+				siftUp(heap, size++, scores);
+			} else if (scores[i] > scores[heap[0]]) {
+				heap[0] = i;
+				siftDown(heap, size, scores);
+			}
+		}
+
+		int[] order = new int[k];
+		while (size > 0) {
+			order[--size] = heap[0];
+			heap[0] = heap[size];
+			siftDown(heap, size, scores);
+		}
+		return order;
+	}
+
+	//Orders the heap with the lowest score, or the later document among equal scores, at the root.
+	private static boolean lower(int a, int b, float[] scores) {
+		return scores[a] < scores[b] || (scores[a] == scores[b] && a > b);
+	}
+
+	private static void siftUp(int[] heap, int i, float[] scores) {
+		while (i > 0 && lower(heap[i], heap[(i - 1) / 2], scores)) {
+			int parent = (i - 1) / 2;
+			int t = heap[i];
+			heap[i] = heap[parent];
+			heap[parent] = t;
+			i = parent;
+		}
+	}
+
+	private static void siftDown(int[] heap, int size, float[] scores) {
+		int i = 0;
+		while (true) {
+			int least = i;
+			int left = 2 * i + 1;
+			if (left < size && lower(heap[left], heap[least], scores)) {
+				least = left;
+			}
+			if (left + 1 < size && lower(heap[left + 1], heap[least], scores)) {
+				least = left + 1;
+			}
+			if (least == i) {
+				return;
+			}
+			int t = heap[i];
+			heap[i] = heap[least];
+			heap[least] = t;
+			i = least;
+		}
+	}
+
+	/**
+	 * Returns the number of distinct words indexed.
+	 *
+	 * @return Number of words.
+	 */
+	public synchronized int getTermCount() {
+		return terms.size();
+	}
+
+	public synchronized int getDocumentCount() {
+		return liveDocs;
+	}
+
+	/**
+	 * Returns the total size of the compressed posting lists.
+	 *
+	 * @return Size in bytes.
+	 */
+	public synchronized long getPostingsSize() {
+		long size = 0;
+		for (Postings p : terms.values()) {
+			size += p.length;
+		}
+		return size;
+	}
+
+	//Returns the live documents containing the term, in order.
+	private int[] termDocs(String term) {
+		Postings postings = terms.get(term);
+		if (postings == null) {
+			return NO_DOCS;
+		}
+
+		int[] result = new int[postings.docFreq];
+		int size = 0;
+		Cursor cursor = new Cursor(postings);
+		while (cursor.next()) {
+			if (docs[cursor.doc] != null) {
+				result[size++] = cursor.doc;
+			}
+		}
+		return size == result.length ? result : Arrays.copyOf(result, size);
+	}
+
+	private int[] allDocs() {
+		int[] result = new int[liveDocs];
+		int size = 0;
+		for (int d=0; d < docCount; d++) {
+			if (docs[d] != null) {
+				result[size++] = d;
+			}
+		}
+		return result;
+	}
+
+	//Returns the documents containing the words next to each other, in order.
+	private int[] phraseDocs(String[] words) {
+		int[] candidates = termDocs(words[0]);
+		for (int i=1; i < words.length; i++) {
+			candidates = intersect(candidates, termDocs(words[i]));
+		}
+		if (candidates.length == 0) {
+			return candidates;
+		}
+
+		Cursor[] cursors = new Cursor[words.length];
+		int[][] positions = new int[words.length][];
+		for (int i=0; i < words.length; i++) {
+			cursors[i] = new Cursor(terms.get(words[i]));
+			positions[i] = new int[8];
+		}
+
+		int[] result = new int[candidates.length];
+		int size = 0;
+		int[] counts = new int[words.length];
+		for (int doc : candidates) {
+			for (int i=0; i < words.length; i++) {
+				cursors[i].advance(doc);
+				if (positions[i].length < cursors[i].freq) {
+					positions[i] = new int[cursors[i].freq * 2];
+				}
+				counts[i] = cursors[i].readPositions(positions[i]);
+			}
+			if (adjacent(positions, counts)) {
+				result[size++] = doc;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	//Returns whether some position of the first word is followed by each of the others in turn.
+	private static boolean adjacent(int[][] positions, int[] counts) {
+		for (int p=0; p < counts[0]; p++) {
+			int start = positions[0][p];
+			boolean found = true;
+			for (int i=1; i < positions.length && found; i++) {
+				found = Arrays.binarySearch(positions[i], 0, counts[i], start + i) >= 0;
+			}
+			if (found) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int[] intersect(int[] a, int[] b) {
+		int[] result = new int[Math.min(a.length, b.length)];
+		int size = 0;
+		for (int i=0, j=0; i < a.length && j < b.length;) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				result[size++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	private static int[] union(int[] a, int[] b) {
+		int[] result = new int[a.length + b.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length || j < b.length) {
+			if (j == b.length || (i < a.length && a[i] < b[j])) {
+				result[size++] = a[i++];
+			} else if (i == a.length || b[j] < a[i]) {
+				result[size++] = b[j++];
+			} else {
+				result[size++] = a[i++];
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	private static int[] difference(int[] a, int[] b) {
+		int[] result = new int[a.length];
+		int size = 0;
+		for (int i=0, j=0; i < a.length; i++) {
+			while (j < b.length && b[j] < a[i]) {
+				j++;
+			}
+			if (j == b.length || b[j] != a[i]) {
+				result[size++] = a[i];
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * A publication matching a full-text query, and how well it matches.
+	 *
+	 */
+	public static class SearchHit {
+		private Publication publication;
+		private float score;
+
+		private SearchHit(Publication publication, float score) {
+			this.publication = publication;
+			this.score = score;
+		}
+
+		public Publication getPublication() {
+			return publication;
+		}
+
+		public float getScore() {
+			return score;
+		}
+	}
+
+	//Positions a word occurs at within a document, in increasing order.
+	private static class Positions {
+		private int[] values = new int[2];
+		private int size;
+
+		private void add(int position) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = position;
+		}
+	}
+
+	//The documents containing a word, each written as the difference from the previous document number,
+	//the number of times the word occurs, and the differences between its positions.
+	private static class Postings {
+		private byte[] data = new byte[8];
+		private int length;
+		private int lastDoc = -1;
+		//Documents appended, including tombstones, and those still live.
+		private int docFreq;
+		private int liveFreq;
+
+		private void append(int doc, Positions positions) {
+			writeVInt(doc - lastDoc);
+			writeVInt(positions.size);
+			int last = 0;
+			for (int i=0; i < positions.size; i++) {
+				writeVInt(positions.values[i] - last);
+				last = positions.values[i];
+			}
+			lastDoc = doc;
+			docFreq++;
+			liveFreq++;
+		}
+
+		private void writeVInt(int value) {
+			if (length + 5 > data.length) {
+				data = Arrays.copyOf(data, Math.max(length + 5, data.length * 2));
+			}
+			while ((value & ~0x7F) != 0) {
+				data[length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			data[length++] = (byte) value;
+		}
+	}
+
+	//Reads through a posting list one document at a time, decoding positions only when asked for.
+	private static class Cursor {
+		private Postings postings;
+		private int offset;
+		private int positionsOffset;
+		private int doc = -1;
+		private int freq;
+
+		private Cursor(Postings postings) {
+			this.postings = postings;
+		}
+
+		private boolean next() {
+			if (offset >= postings.length) {
+				doc = Integer.MAX_VALUE;
+				return false;
+			}
+			doc += readVInt();
+			freq = readVInt();
+			positionsOffset = offset;
+			for (int i=0; i < freq; i++) {
+				readVInt();
+			}
+			return true;
+		}
+
+		//Moves to the first document at or after the target, returning whether it is the target.
+		private boolean advance(int target) {
+			while (doc < target) {
+				if (!next()) {
+					return false;
+				}
+			}
+			return doc == target;
+		}
+
+		private int readPositions(int[] into) {
+			int saved = offset;
+			offset = positionsOffset;
+			int position = 0;
+			for (int i=0; i < freq; i++) {
+				position += readVInt();
+				into[i] = position;
+			}
+			offset = saved;
+			return freq;
+		}
+
+		private int readVInt() {
+			byte[] data = postings.data;
+			int b = data[offset++];
+			int value = b & 0x7F;
+			for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+				b = data[offset++];
+				value |= (b & 0x7F) << shift;
+			}
+			return value;
+		}
+	}
+
+	//A parsed query, matched to the sorted numbers of the live documents it selects.
+	private static abstract class Node {
+		abstract int[] match(FullTextIndex index);
+	}
+
+	private static class TermNode extends Node {
+		private String term;
+
+		private TermNode(String term) {
+			this.term = term;
+		}
+
+		@Override
+		int[] match(FullTextIndex index) {
+			return index.termDocs(term);
+		}
+	}
+
+	private static class PhraseNode extends Node {
+		private String[] words;
+
+		private PhraseNode(List<String> words) {
+			this.words = words.toArray(new String[words.size()]);
+		}
+
+		@Override
+		int[] match(FullTextIndex index) {
+			return index.phraseDocs(words);
+		}
+	}
+
+	private static class NotNode extends Node {
+		private Node child;
+
+		private NotNode(Node child) {
+			this.child = child;
+		}
+
+		@Override
+		int[] match(FullTextIndex index) {
+			return difference(index.allDocs(), child.match(index));
+		}
+	}
+
+	private static class AndNode extends Node {
+		private ArrayList<Node> children = new ArrayList<Node>();
+
+		@Override
+		int[] match(FullTextIndex index) {
+			int[] result = null;
+			ArrayList<Node> excluded = new ArrayList<Node>();
+			for (Node n : children) {
+				if (n instanceof NotNode) {
+					excluded.add(((NotNode) n).child);
+				} else {
+					result = result == null ? n.match(index) : intersect(result, n.match(index));
+				}
+			}
+			if (result == null) {
+				result = index.allDocs();
+			}
+			for (Node n : excluded) {
+				if (result.length > 0) {
+					result = difference(result, n.match(index));
+				}
+			}
+			return result;
+		}
+	}
+
+	private static class OrNode extends Node {
+		private ArrayList<Node> children = new ArrayList<Node>();
+
+		@Override
+		int[] match(FullTextIndex index) {
+			int[] result = NO_DOCS;
+			for (Node n : children) {
+				result = union(result, n.match(index));
+			}
+			return result;
+		}
+	}
+
+	//Parses queries by recursive descent, collecting the words that count towards a publication's score.
+	private static class QueryParser {
+		private ArrayList<String> tokens;
+		private int next;
+		private int negated;
+		private LinkedHashSet<String> scoredTerms;
+
+		private QueryParser(String query) throws DPMSystemException {
+			tokens = lex(query == null ? "" : query);
+			scoredTerms = new LinkedHashSet<String>();
+		}
+
+		private Node parse() throws DPMSystemException {
+			if (tokens.isEmpty()) {
+				throw new DPMSystemException("Search query is empty.");
+			}
+			Node root = parseOr();
+			if (next < tokens.size()) {
+				throw new DPMSystemException("Unexpected " + tokens.get(next) + " in search query.");
+			}
+			return root;
+		}
+
+		private Node parseOr() throws DPMSystemException {
+			OrNode or = new OrNode();
+			or.children.add(parseAnd());
+			while (next < tokens.size() && tokens.get(next).equals("OR")) {
+				next++;
+				or.children.add(parseAnd());
+			}
+			return or.children.size() == 1 ? or.children.get(0) : or;
+		}
+
+		private Node parseAnd() throws DPMSystemException {
+			AndNode and = new AndNode();
+			and.children.add(parseUnary());
+			while (next < tokens.size() && !tokens.get(next).equals("OR") && !tokens.get(next).equals(")")) {
+				if (tokens.get(next).equals("AND")) {
+					next++;
+				}
+				and.children.add(parseUnary());
+			}
+			return and.children.size() == 1 ? and.children.get(0) : and;
+		}
+
+		private Node parseUnary() throws DPMSystemException {
+			if (next == tokens.size()) {
+				throw new DPMSystemException("Search query ends unexpectedly.");
+			}
+
+			String token = tokens.get(next++);
+			if (token.equals("NOT") || token.equals("-")) {
+				negated++;
+				Node child = parseUnary();
+				negated--;
+				return new NotNode(child);
+			}
+			if (token.equals("(")) {
+				Node inner = parseOr();
+				if (next == tokens.size() || !tokens.get(next).equals(")")) {
+					throw new DPMSystemException("Unbalanced parentheses in search query.");
+				}
+				next++;
+				return inner;
+			}
+			if (token.equals(")") || token.equals("AND") || token.equals("OR")) {
+				throw new DPMSystemException("Unexpected " + token + " in search query.");
+			}
+
+			//Quoted phrases, and words that split into several, such as hyphenated words, match as phrases.
+			List<String> words = tokenize(token.startsWith("\"") ? token.substring(1) : token);
+			if (negated == 0) {
+				scoredTerms.addAll(words);
+			}
+			if (words.isEmpty()) {
+				return new OrNode();
+			}
+			return words.size() == 1 ? new TermNode(words.get(0)) : new PhraseNode(words);
+		}
+
+		//Splits the query into words, quoted phrases (kept with their opening quote), parentheses and minus signs.
+		private static ArrayList<String> lex(String query) throws DPMSystemException {
+			ArrayList<String> tokens = new ArrayList<String>();
+			int i = 0;
+			while (i < query.length()) {
+				char c = query.charAt(i);
+				if (Character.isWhitespace(c)) {
+					i++;
+				} else if (c == '(' || c == ')') {
+					tokens.add(String.valueOf(c));
+					i++;
+				} else if (c == '"') {
+					int end = query.indexOf('"', i + 1);
+					if (end < 0) {
+						throw new DPMSystemException("Unclosed quote in search query.");
+					}
+					tokens.add(query.substring(i, end));
+					i = end + 1;
+				} else {
+					if (c == '-') {
+						tokens.add("-");
+						i++;
+					}
+					int start = i;
+					while (i < query.length() && !Character.isWhitespace(query.charAt(i))
+							&& "()\"".indexOf(query.charAt(i)) < 0) {
+						i++;
+					}
+					if (i > start) {
+						tokens.add(query.substring(start, i));
+					}
+				}
+			}
+			return tokens;
+		}
+	}
+}
@@ -0,0 +1,365 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The FuzzyAuthorIndex class finds author names within a given edit distance of a possibly misspelt
+ * name, so that "Smyth" finds "Smith". Names are normalized as in AuthorIndex.
+ *
+ * Every distinct name is split into trigrams, after being padded with a marker at each end, and each
+ * trigram lists the names containing it, in increasing order of ID. A name within edit distance k of the
+ * query must be within k of its length, and must share all but 3k of the query's trigrams, as each edit
+ * changes at most three. Such a name must therefore contain one of any 3k + 1 of the query's trigrams, so
+ * candidates are drawn only from the lists of its 3k + 1 rarest trigrams. The remaining trigrams are looked
+ * up in their lists by binary search, a candidate being dropped as soon as it cannot reach the shared count
+ * it needs, and only the remainder have their edit distance worked out, which stops as soon as it exceeds
+ * k. Queries too short for the trigram test to prune anything fall back to the names of a suitable length.
+ *
+ * Names no longer listed by any publication are left in the posting lists and skipped, until there are
+ * more of them than live names and the index is rebuilt.
+ *
+ * Searches reuse the index's scratch arrays, and are made outside the data store's lock, so its methods
+ * are synchronized.
+ *
+ */
+public class FuzzyAuthorIndex implements PublicationIndex {
+	private static final char PAD = '\u0000';
+	private static final Comparator<Match> ORDER = new Comparator<Match>() {
+		@Override
+		public int compare(Match a, Match b) {
+			if (a.distance != b.distance) {
+				return Integer.compare(a.distance, b.distance);
+			}
+			if (a.publicationCount != b.publicationCount) {
+				return Integer.compare(b.publicationCount, a.publicationCount);
+			}
+			return a.key.compareTo(b.key);
+		}
+	};
+
+	private HashMap<String, Name> names;
+	private ArrayList<Name> namesByID;
+	private HashMap<String, IntList> trigrams;
+	private ArrayList<IntList> namesByLength;
+	private IdentityHashMap<Publication, String[]> indexedKeys;
+	private int liveNames;
+	private int[] counts;
+	private int[] previousRow;
+	private int[] currentRow;
+	private int lastCandidateCount;
+
+	public FuzzyAuthorIndex() {
+		clear();
+	}
+
+	/**
+	 * An author name matching a fuzzy search, with its edit distance from the name searched for.
+	 *
+	 */
+	public static class Match {
+		private String key;
+		private String name;
+		private int distance;
+		private int publicationCount;
+
+		private Match(Name name, int distance) {
+			this.key = name.key;
+			this.name = name.text;
+			this.distance = distance;
+			this.publicationCount = name.count;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getDistance() {
+			return distance;
+		}
+
+		public int getPublicationCount() {
+			return publicationCount;
+		}
+	}
+
+	private static class Name {
+		private int id;
+		private String key;
+		private String text;
+		private int count;
+	}
+
+	private static class IntList {
+		private int[] values = new int[4];
+		private int size;
+
+		private void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+	}
+
+	@Override
+	public synchronized void add(Publication publication) {
+		if (publication.getAuthorNames() == null) {
+			return;
+		}
+
+		LinkedHashMap<String, String> authors = new LinkedHashMap<String, String>();
+		for (String author : publication.getAuthorNames()) {
+			String key = AuthorIndex.normalize(author);
+			if (!key.isEmpty() && !authors.containsKey(key)) {
+				authors.put(key, author);
+			}
+		}
+
+		for (Map.Entry<String, String> author : authors.entrySet()) {
+			Name name = names.get(author.getKey());
+			if (name == null) {
+				name = addName(author.getKey(), author.getValue());
+			}
+			name.count++;
+		}
+		indexedKeys.put(publication, authors.keySet().toArray(new String[authors.size()]));
+	}
+
+	@Override
+	public synchronized void remove(Publication publication) {
+		String[] keys = indexedKeys.remove(publication);
+		if (keys == null) {
+			return;
+		}
+
+		for (String key : keys) {
+			Name name = names.get(key);
+			if (--name.count == 0) {
+				names.remove(key);
+				namesByID.set(name.id, null);
+				liveNames--;
+			}
+		}
+
+		if (namesByID.size() - liveNames > Math.max(1024, liveNames)) {
+			rebuild();
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		names = new HashMap<String, Name>();
+		namesByID = new ArrayList<Name>();
+		trigrams = new HashMap<String, IntList>();
+		namesByLength = new ArrayList<IntList>();
+		indexedKeys = new IdentityHashMap<Publication, String[]>();
+		liveNames = 0;
+		counts = new int[16];
+		previousRow = new int[16];
+		currentRow = new int[16];
+	}
+
+	private Name addName(String key, String text) {
+		Name name = new Name();
+		name.id = namesByID.size();
+		name.key = key;
+		name.text = text;
+		names.put(key, name);
+		namesByID.add(name);
+		liveNames++;
+
+		for (String gram : trigrams(key)) {
+			IntList list = trigrams.get(gram);
+			if (list == null) {
+				list = new IntList();
+				trigrams.put(gram, list);
+			}
+			list.add(name.id);
+		}
+		while (namesByLength.size() <= key.length()) {
+			namesByLength.add(new IntList());
+		}
+		namesByLength.get(key.length()).add(name.id);
+		return name;
+	}
+
+	//Lists the live names again under new IDs, dropping those no longer used.
+	private void rebuild() {
+		IdentityHashMap<Publication, String[]> publications = indexedKeys;
+		HashMap<String, Name> live = names;
+		clear();
+		indexedKeys = publications;
+		for (Name n : live.values()) {
+			addName(n.key, n.text).count = n.count;
+		}
+	}
+
+	//Returns the trigrams of the padded key, a repeated trigram being numbered so each occurrence is distinct.
+	private static List<String> trigrams(String key) {
+		String padded = PAD + key + PAD;
+		ArrayList<String> grams = new ArrayList<String>(key.length());
+		HashMap<String, Integer> seen = new HashMap<String, Integer>();
+		for (int i=0; i + 3 <= padded.length(); i++) {
+			String gram = padded.substring(i, i + 3);
+			Integer occurrence = seen.get(gram);
+			seen.put(gram, occurrence == null ? 1 : occurrence + 1);
+			grams.add(occurrence == null ? gram : gram + (char) (occurrence + '0'));
+		}
+		return grams;
+	}
+
+	/**
+	 * Returns the author names within the given edit distance of the name searched for, closest first,
+	 * and among equally close names those listed by the most publications first.
+	 *
+	 * @param author Name searched for, normalized before it is compared.
+	 * @param maxDistance Greatest number of inserted, deleted or substituted characters allowed.
+	 * @param limit Maximum number of names returned.
+	 * @return Matching names.
+	 */
+	public synchronized List<Match> search(String author, int maxDistance, int limit) {
+		String key = AuthorIndex.normalize(author);
+		lastCandidateCount = 0;
+		if (key.isEmpty() || limit <= 0) {
+			return Collections.emptyList();
+		}
+
+		ArrayList<Match> matches = new ArrayList<Match>();
+		int minLength = Math.max(1, key.length() - maxDistance);
+		int maxLength = key.length() + maxDistance;
+
+		if (key.length() - 3 * maxDistance <= 0) {
+			for (int length = minLength; length <= maxLength && length < namesByLength.size(); length++) {
+				IntList ids = namesByLength.get(length);
+				for (int i=0; i < ids.size; i++) {
+					verify(key, namesByID.get(ids.values[i]), maxDistance, matches);
+				}
+			}
+		} else {
+			if (counts.length < namesByID.size()) {
+				counts = new int[Math.max(namesByID.size(), counts.length * 2)];
+			}
+
+			List<String> grams = trigrams(key);
+			IntList[] lists = new IntList[grams.size()];
+			for (int i=0; i < lists.length; i++) {
+				lists[i] = trigrams.get(grams.get(i));
+				if (lists[i] == null) {
+					lists[i] = new IntList();
+				}
+			}
+			Arrays.sort(lists, new Comparator<IntList>() {
+				@Override
+				public int compare(IntList a, IntList b) {
+					return Integer.compare(a.size, b.size);
+				}
+			});
+
+			int prefix = Math.min(lists.length, 3 * maxDistance + 1);
+			IntList touched = new IntList();
+			for (int g=0; g < prefix; g++) {
+				for (int i=0; i < lists[g].size; i++) {
+					if (counts[lists[g].values[i]]++ == 0) {
+						touched.add(lists[g].values[i]);
+					}
+				}
+			}
+
+			for (int i=0; i < touched.size; i++) {
+				int id = touched.values[i];
+				Name name = namesByID.get(id);
+				int shared = counts[id];
+				counts[id] = 0;
+				if (name == null || name.key.length() < minLength || name.key.length() > maxLength) {
+					continue;
+				}
+
+				int needed = Math.max(key.length(), name.key.length()) - 3 * maxDistance;
+				for (int g = prefix; g < lists.length && shared < needed && shared + lists.length - g >= needed; g++) {
+					if (Arrays.binarySearch(lists[g].values, 0, lists[g].size, id) >= 0) {
+						shared++;
+					}
+				}
+				if (shared >= needed) {
+					verify(key, name, maxDistance, matches);
+				}
+			}
+		}
+
+		Collections.sort(matches, ORDER);
+		return matches.size() > limit ? new ArrayList<Match>(matches.subList(0, limit)) : matches;
+	}
+
+	private void verify(String key, Name name, int maxDistance, List<Match> matches) {
+		if (name == null) {
+			return;
+		}
+		lastCandidateCount++;
+		int distance = distance(key, name.key, maxDistance);
+		if (distance <= maxDistance) {
+			matches.add(new Match(name, distance));
+		}
+	}
+
+	//Returns the edit distance between the strings, or max + 1 once it is known to be greater than max.
+	private int distance(String a, String b, int max) {
+		if (Math.abs(a.length() - b.length()) > max) {
+			return max + 1;
+		}
+		if (previousRow.length <= b.length()) {
+			previousRow = new int[b.length() + 1];
+			currentRow = new int[b.length() + 1];
+		}
+
+		for (int j=0; j <= b.length(); j++) {
+			previousRow[j] = j;
+		}
+		for (int i=1; i <= a.length(); i++) {
+			currentRow[0] = i;
+			int rowMin = i;
+			char c = a.charAt(i - 1);
+			for (int j=1; j <= b.length(); j++) {
+				int substitution = previousRow[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+				int d = Math.min(substitution, Math.min(previousRow[j], currentRow[j - 1]) + 1);
+				currentRow[j] = d;
+				if (d < rowMin) {
+					rowMin = d;
+				}
+			}
+			if (rowMin > max) {
+				return max + 1;
+			}
+			int[] t = previousRow;
+			previousRow = currentRow;
+			currentRow = t;
+		}
+		return previousRow[b.length()];
+	}
+
+	/**
+	 * Returns the number of names whose edit distance was worked out by the last search, for
+	 * measuring how well candidates are pruned.
+	 *
+	 * @return Number of candidates verified.
+	 */
+	public synchronized int getLastCandidateCount() {
+		return lastCandidateCount;
+	}
+
+	/**
+	 * Returns the number of distinct author names indexed.
+	 *
+	 * @return Number of names.
+	 */
+	public synchronized int size() {
+		return liveNames;
+	}
+}
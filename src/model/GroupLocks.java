@@ -0,0 +1,128 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The GroupLocks class serializes changes made to each research group, its members, their publications
+ * and its seminars, while letting changes to different groups go ahead together. Each group is locked
+ * through one of a fixed number of stripes, chosen by groupID, and every group change also holds the
+ * department lock shared. Changes spanning the department, such as adding, removing or renumbering a
+ * research group, hold the department lock exclusively, and so wait for every group change to finish.
+ * A group's ID is read only once the department lock is held, so it cannot be renumbered in between.
+ *
+ * Locks are always taken in the same order, so that no two threads can each hold a lock the other is
+ * waiting for: the department lock first, then the stripes in ascending order, and the data store's own
+ * lock last. A change to several groups locks all of their stripes at once through lockGroups. A
+ * department change may be made by a thread already holding the department lock exclusively, but not by
+ * one holding it shared for a group change, as the shared lock cannot be upgraded.
+ *
+ * The data store is told each time a thread lets go of the last group it holds, so that work needing
+ * the department lock, such as a checkpoint falling due during a group change, can be done then.
+ *
+ */
+public class GroupLocks {
+	/**
+	 * Number of stripes groups are spread over.
+	 */
+	public static final int STRIPES = 64;
+
+	private final ReentrantReadWriteLock department = new ReentrantReadWriteLock();
+	private final ReentrantLock[] stripes;
+	private final Runnable released;
+
+	/**
+	 * @param released Run by a thread once it holds no group.
+	 */
+	GroupLocks(Runnable released) {
+		this.released = released;
+		stripes = new ReentrantLock[STRIPES];
+		for (int i=0; i < STRIPES; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * Locks the given research group against changes by other threads.
+	 *
+	 * @param group
+	 */
+	public void lockGroup(ResearchGroup group) {
+		department.readLock().lock();
+		stripes[stripe(group.getGroupID())].lock();
+	}
+
+	public void unlockGroup(ResearchGroup group) {
+		stripes[stripe(group.getGroupID())].unlock();
+		department.readLock().unlock();
+		if (department.getReadHoldCount() == 0) {
+			released.run();
+		}
+	}
+
+	/**
+	 * Locks each of the given research groups against changes by other threads, their stripes being
+	 * taken in ascending order. A group may be given more than once.
+	 *
+	 * @param groups
+	 */
+	public void lockGroups(ResearchGroup... groups) {
+		department.readLock().lock();
+		for (int s : stripes(groups)) {
+			stripes[s].lock();
+		}
+	}
+
+	public void unlockGroups(ResearchGroup... groups) {
+		int[] s = stripes(groups);
+		for (int i = s.length - 1; i >= 0; i--) {
+			stripes[s[i]].unlock();
+		}
+		department.readLock().unlock();
+		if (department.getReadHoldCount() == 0) {
+			released.run();
+		}
+	}
+
+	/**
+	 * Locks the whole department, waiting for every change to a group to finish and holding off new ones.
+	 */
+	public void lockDepartment() {
+		department.writeLock().lock();
+	}
+
+	public void unlockDepartment() {
+		department.writeLock().unlock();
+	}
+
+	/**
+	 * Returns whether the calling thread holds a group but not the whole department, and so cannot lock
+	 * the department.
+	 *
+	 * @return True if a group is held.
+	 */
+	boolean holdsGroupOnly() {
+		return department.getReadHoldCount() > 0 && !department.isWriteLockedByCurrentThread();
+	}
+
+	private static int stripe(int groupID) {
+		return Math.floorMod(groupID, STRIPES);
+	}
+
+	//Returns the distinct stripes of the groups, in ascending order.
+	private static int[] stripes(ResearchGroup[] groups) {
+		int[] s = new int[groups.length];
+		for (int i=0; i < groups.length; i++) {
+			s[i] = stripe(groups[i].getGroupID());
+		}
+		Arrays.sort(s);
+		int n = 0;
+		for (int i=0; i < s.length; i++) {
+			if (n == 0 || s[i] != s[n - 1]) {
+				s[n++] = s[i];
+			}
+		}
+		return Arrays.copyOf(s, n);
+	}
+}
@@ -1,6 +1,6 @@
 package model;
 
-public abstract class GroupMember {
+public abstract class GroupMember extends TrackedEntity {
 	public enum memberType {
 		STUDENT,
 		STAFF;
@@ -18,37 +18,42 @@ public abstract class GroupMember {
 		this.title = title;
 		this.group = group;
 		this.emailAddress = emailAddress;
-		this.setType(type);
+		this.type = type;
 	}
 	public String getName() {
 		return name;
 	}
 	public void setName(String name) {
 		this.name = name;
+		markModified();
 	}
 	public String getTitle() {
 		return title;
 	}
 	public void setTitle(String title) {
 		this.title = title;
+		markModified();
 	}
 	public ResearchGroup getGroup() {
 		return group;
 	}
 	public void setGroup(ResearchGroup group) {
 		this.group = group;
+		markModified();
 	}
 	public String getEmailAddress() {
 		return emailAddress;
 	}
 	public void setEmailAddress(String emailAddress) {
 		this.emailAddress = emailAddress;
+		markModified();
 	}
 	public memberType getType() {
 		return type;
 	}
 	public void setType(memberType type) {
 		this.type = type;
+		markModified();
 	}
 	
 	@Override
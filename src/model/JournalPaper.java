@@ -17,11 +17,13 @@ public class JournalPaper extends Publication {
 	}
 	public void setJournalName(String journalName) {
 		this.journalName = journalName;
+		markModified();
 	}
 	public int getPageNumber() {
 		return pageNumber;
 	}
 	public void setPageNumber(int pageNumber) {
 		this.pageNumber = pageNumber;
+		markModified();
 	}
 }
@@ -0,0 +1,501 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The JournalRecord class describes a single mutation of the data store in a compact form that can be
+ * appended to the mutation journal, and re-applied to a data store when the journal is replayed.
+ *
+ */
+public class JournalRecord {
+	public enum operation {
+		ADD_PUBLICATION,
+		REMOVE_PUBLICATION,
+		EDIT_PUBLICATION,
+		ADD_STAFF,
+		REMOVE_STAFF,
+		EDIT_STAFF,
+		ADD_STUDENT,
+		REMOVE_STUDENT,
+		EDIT_STUDENT,
+		ADD_GROUP,
+		REMOVE_GROUP,
+		EDIT_GROUP,
+		MAKE_COORDINATOR,
+		ADD_SEMINAR,
+		REMOVE_SEMINAR,
+		EDIT_SEMINAR;
+	}
+
+	private long sequence;
+	private operation op;
+	private String[] fields;
+
+	public JournalRecord(operation op, String... fields) {
+		this.op = op;
+		this.fields = fields;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	public operation getOperation() {
+		return op;
+	}
+
+	public String[] getFields() {
+		return fields;
+	}
+
+	public static JournalRecord addPublication(AcademicStaff owner, Publication publication) {
+		return new JournalRecord(operation.ADD_PUBLICATION, concat(owner.getEmailAddress(), publicationFields(publication)));
+	}
+
+	public static JournalRecord removePublication(AcademicStaff owner, Publication publication) {
+		return new JournalRecord(operation.REMOVE_PUBLICATION, owner.getEmailAddress(), publication.getPublicationID());
+	}
+
+	public static JournalRecord editPublication(Publication publication) {
+		return new JournalRecord(operation.EDIT_PUBLICATION, publicationFields(publication));
+	}
+
+	public static JournalRecord addStaff(AcademicStaff staff) {
+		return new JournalRecord(operation.ADD_STAFF, String.valueOf(staff.getGroup().getGroupID()), staff.getName(),
+				staff.getTitle(), staff.getEmailAddress(), staff.getPassword());
+	}
+
+	public static JournalRecord removeStaff(AcademicStaff staff) {
+		return new JournalRecord(operation.REMOVE_STAFF, String.valueOf(staff.getGroup().getGroupID()),
+				staff.getEmailAddress());
+	}
+
+	public static JournalRecord editStaff(String oldEmailAddress, AcademicStaff staff) {
+		return new JournalRecord(operation.EDIT_STAFF, oldEmailAddress, staff.getName(), staff.getTitle(),
+				staff.getEmailAddress(), staff.getPassword());
+	}
+
+	public static JournalRecord addStudent(ResearchStudent student) {
+		return new JournalRecord(operation.ADD_STUDENT, String.valueOf(student.getGroup().getGroupID()),
+				student.getName(), student.getTitle(), student.getEmailAddress(), student.getStudentID());
+	}
+
+	public static JournalRecord removeStudent(ResearchStudent student) {
+		return new JournalRecord(operation.REMOVE_STUDENT, String.valueOf(student.getGroup().getGroupID()),
+				student.getEmailAddress());
+	}
+
+	public static JournalRecord editStudent(String oldEmailAddress, ResearchStudent student) {
+		return new JournalRecord(operation.EDIT_STUDENT, oldEmailAddress, student.getName(), student.getTitle(),
+				student.getEmailAddress(), student.getStudentID());
+	}
+
+	public static JournalRecord addGroup(ResearchGroup group) {
+		return new JournalRecord(operation.ADD_GROUP, String.valueOf(group.getGroupID()), group.getName());
+	}
+
+	public static JournalRecord removeGroup(ResearchGroup group) {
+		return new JournalRecord(operation.REMOVE_GROUP, String.valueOf(group.getGroupID()));
+	}
+
+	public static JournalRecord editGroup(int oldGroupID, ResearchGroup group) {
+		return new JournalRecord(operation.EDIT_GROUP, String.valueOf(oldGroupID), group.getName(),
+				String.valueOf(group.getGroupID()));
+	}
+
+	public static JournalRecord makeCoordinator(AcademicStaff staff) {
+		return new JournalRecord(operation.MAKE_COORDINATOR, staff.getEmailAddress());
+	}
+
+	public static JournalRecord addSeminar(ResearchGroup group, Seminar seminar) {
+		return new JournalRecord(operation.ADD_SEMINAR, String.valueOf(group.getGroupID()),
+				seminar.getDateTime().toString(), seminar.getLocation(), seminar.getTopic());
+	}
+
+	public static JournalRecord removeSeminar(ResearchGroup group, Seminar seminar) {
+		return new JournalRecord(operation.REMOVE_SEMINAR, String.valueOf(group.getGroupID()),
+				seminar.getDateTime().toString(), seminar.getTopic());
+	}
+
+	public static JournalRecord editSeminar(ResearchGroup group, LocalDateTime oldDateTime, String oldTopic,
+			Seminar seminar) {
+		return new JournalRecord(operation.EDIT_SEMINAR, String.valueOf(group.getGroupID()), oldDateTime.toString(),
+				oldTopic, seminar.getDateTime().toString(), seminar.getLocation(), seminar.getTopic());
+	}
+
+	/**
+	 * Re-applies the mutation described by this record to the given data store.
+	 *
+	 * @param dataStore
+	 * @throws DPMSystemException If the objects the record refers to cannot be found, or passed to it
+	 * from the data store or model classes.
+	 */
+	public void applyTo(DataStorage dataStore) throws DPMSystemException {
+		switch (op) {
+		case ADD_PUBLICATION: {
+			AcademicStaff owner = findStaff(dataStore, fields[0]);
+			Publication publication = buildPublication(fields, 1);
+			owner.addPublication(publication);
+			dataStore.addPublication(publication);
+			break;
+		}
+		case REMOVE_PUBLICATION: {
+			AcademicStaff owner = findStaff(dataStore, fields[0]);
+			Publication publication = findPublication(dataStore, fields[1]);
+			dataStore.removePublication(publication);
+			owner.removePublication(publication);
+			break;
+		}
+		case EDIT_PUBLICATION: {
+			Publication edited = buildPublication(fields, 0);
+			Publication publication = findPublication(dataStore, edited.getPublicationID());
+			publication.update(() -> copyPublication(edited, publication));
+			break;
+		}
+		case ADD_STAFF: {
+			ResearchGroup group = findGroup(dataStore, fields[0]);
+			AcademicStaff staff = new AcademicStaff(fields[1], fields[2], group, fields[3],
+					GroupMember.memberType.STAFF, fields[4]);
+			dataStore.addAcademicStaff(staff);
+			group.addMember(staff);
+			break;
+		}
+		case REMOVE_STAFF: {
+			ResearchGroup group = findGroup(dataStore, fields[0]);
+			AcademicStaff staff = findStaff(dataStore, fields[1]);
+			dataStore.removeAcademicStaff(staff);
+			group.removeMember(staff);
+			break;
+		}
+		case EDIT_STAFF: {
+			AcademicStaff staff = findStaff(dataStore, fields[0]);
+			staff.setName(fields[1]);
+			staff.setTitle(fields[2]);
+			staff.setEmailAddress(fields[3]);
+			staff.setPassword(fields[4]);
+			break;
+		}
+		case ADD_STUDENT: {
+			ResearchGroup group = findGroup(dataStore, fields[0]);
+			ResearchStudent student = new ResearchStudent(fields[1], fields[2], group, fields[3],
+					GroupMember.memberType.STUDENT, fields[4]);
+			dataStore.addResearchStudent(student);
+			group.addMember(student);
+			break;
+		}
+		case REMOVE_STUDENT: {
+			ResearchGroup group = findGroup(dataStore, fields[0]);
+			ResearchStudent student = findStudent(dataStore, fields[1]);
+			dataStore.removeResearchStudent(student);
+			group.removeMember(student);
+			break;
+		}
+		case EDIT_STUDENT: {
+			ResearchStudent student = findStudent(dataStore, fields[0]);
+			student.setName(fields[1]);
+			student.setTitle(fields[2]);
+			student.setEmailAddress(fields[3]);
+			student.setStudentID(fields[4]);
+			break;
+		}
+		case ADD_GROUP:
+			dataStore.addResearchGroup(new ResearchGroup(fields[1], Integer.parseInt(fields[0])));
+			break;
+		case REMOVE_GROUP:
+			dataStore.removeResearchGroup(findGroup(dataStore, fields[0]));
+			break;
+		case EDIT_GROUP: {
+			ResearchGroup group = findGroup(dataStore, fields[0]);
+			group.setName(fields[1]);
+			group.setGroupID(Integer.parseInt(fields[2]));
+			break;
+		}
+		case MAKE_COORDINATOR: {
+			AcademicStaff staff = findStaff(dataStore, fields[0]);
+			staff.setCoordinator(true);
+			staff.getGroup().setSeminarCoordinator(staff);
+			break;
+		}
+		case ADD_SEMINAR: {
+			ResearchGroup group = findGroup(dataStore, fields[0]);
+			group.addOldSeminar(new Seminar(LocalDateTime.parse(fields[1]), fields[2], fields[3], group));
+			break;
+		}
+		case REMOVE_SEMINAR: {
+			ResearchGroup group = findGroup(dataStore, fields[0]);
+			group.removeSeminar(findSeminar(group, fields[1], fields[2]));
+			break;
+		}
+		case EDIT_SEMINAR: {
+			//The seminar is replaced rather than edited, as its date may have passed since the edit was made.
+			ResearchGroup group = findGroup(dataStore, fields[0]);
+			group.removeSeminar(findSeminar(group, fields[1], fields[2]));
+			group.addOldSeminar(new Seminar(LocalDateTime.parse(fields[3]), fields[4], fields[5], group));
+			break;
+		}
+		}
+	}
+
+	/**
+	 * Returns the IDs of the research groups changed by the mutation. The groups are looked up in the
+	 * data store, which the mutation must already have been applied to.
+	 *
+	 * @param dataStore
+	 * @return Group IDs, or null if they cannot be determined.
+	 */
+	public int[] getAffectedGroups(DataStorage dataStore) {
+		try {
+			switch (op) {
+			case ADD_PUBLICATION:
+			case REMOVE_PUBLICATION:
+			case MAKE_COORDINATOR:
+				return new int[] {findStaff(dataStore, fields[0]).getGroup().getGroupID()};
+			case EDIT_PUBLICATION: {
+				//The shard holding a publication is that of the staff member it is listed under.
+				AcademicStaff owner = findStaff(dataStore, fields[5]);
+				if (!owner.getPublicationList().contains(findPublication(dataStore, fields[0]))) {
+					return null;
+				}
+				return new int[] {owner.getGroup().getGroupID()};
+			}
+			case EDIT_STAFF:
+				return new int[] {findStaff(dataStore, fields[3]).getGroup().getGroupID()};
+			case EDIT_STUDENT:
+				return new int[] {findStudent(dataStore, fields[3]).getGroup().getGroupID()};
+			case EDIT_GROUP:
+				return new int[] {Integer.parseInt(fields[0]), Integer.parseInt(fields[2])};
+			default:
+				return new int[] {Integer.parseInt(fields[0])};
+			}
+		} catch (DPMSystemException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Encodes the record as a single line of tab separated fields.
+	 *
+	 * @return Encoded record, without a line terminator.
+	 */
+	public String encode() {
+		StringBuilder line = new StringBuilder();
+		line.append(sequence).append('\t').append(op.name());
+		for (String f : fields) {
+			line.append('\t');
+			escape(f, line);
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Decodes a record from a line written by encode.
+	 *
+	 * @param line
+	 * @return The decoded record.
+	 * @throws DPMSystemException If the line is not a valid record.
+	 */
+	public static JournalRecord decode(String line) throws DPMSystemException {
+		String[] parts = line.split("\t", -1);
+		if (parts.length < 2) {
+			throw new DPMSystemException("Malformed journal record.");
+		}
+
+		try {
+			String[] fields = new String[parts.length - 2];
+			for (int i=0; i < fields.length; i++) {
+				fields[i] = unescape(parts[i + 2]);
+			}
+
+			JournalRecord record = new JournalRecord(operation.valueOf(parts[1]), fields);
+			record.setSequence(Long.parseLong(parts[0]));
+			return record;
+		} catch (IllegalArgumentException e) {
+			throw new DPMSystemException("Malformed journal record.");
+		}
+	}
+
+	//Fields shared by the add and edit publication records.
+	private static String[] publicationFields(Publication p) {
+		String extra1 = null;
+		String extra2 = null;
+		String extra3 = null;
+
+		if (p.getPublicationType() == Publication.publicationType.JOURNALPAPER) {
+			JournalPaper journal = (JournalPaper) p;
+			extra1 = journal.getJournalName();
+			extra2 = String.valueOf(journal.getPageNumber());
+		} else if (p.getPublicationType() == Publication.publicationType.CONFERENCEPAPER) {
+			ConferencePaper conference = (ConferencePaper) p;
+			extra1 = conference.getConferenceName();
+			extra2 = conference.getConferenceLocation();
+			extra3 = String.valueOf(conference.getConferenceDate());
+		} else if (p.getPublicationType() == Publication.publicationType.BOOK) {
+			Book book = (Book) p;
+			extra1 = book.getiSBN();
+			extra2 = book.getPublisher();
+		}
+
+		return new String[] {p.getPublicationID(), p.getTitle(), String.join("\n", p.getAuthorNames()),
+				p.getaBstract(), String.valueOf(p.getGroupID()), p.getStaffEmail(),
+				String.valueOf(p.getPublicationType()), String.valueOf(p.getPublicationDate()), extra1, extra2, extra3};
+	}
+
+	private static Publication buildPublication(String[] f, int i) {
+		ArrayList<String> authorNames = new ArrayList<String>();
+		if (!f[i + 2].isEmpty()) {
+			authorNames.addAll(Arrays.asList(f[i + 2].split("\n")));
+		}
+		int groupID = Integer.parseInt(f[i + 4]);
+		Publication.publicationType type = Publication.publicationType.valueOf(f[i + 6]);
+		LocalDate date = LocalDate.parse(f[i + 7]);
+
+		switch (type) {
+		case JOURNALPAPER:
+			return new JournalPaper(f[i], f[i + 1], authorNames, f[i + 3], groupID, f[i + 5], type, date,
+					f[i + 8], Integer.parseInt(f[i + 9]));
+		case CONFERENCEPAPER:
+			return new ConferencePaper(f[i], f[i + 1], authorNames, f[i + 3], groupID, f[i + 5], type, date,
+					f[i + 8], f[i + 9], LocalDate.parse(f[i + 10]));
+		default:
+			return new Book(f[i], f[i + 1], authorNames, f[i + 3], groupID, f[i + 5], type, date, f[i + 8], f[i + 9]);
+		}
+	}
+
+	//Copies the fields changed by AcademicStaffController.editPublication.
+	private static void copyPublication(Publication from, Publication to) {
+		to.setTitle(from.getTitle());
+		to.setAuthorNames(from.getAuthorNames());
+		to.setaBstract(from.getaBstract());
+
+		if (from instanceof JournalPaper && to instanceof JournalPaper) {
+			((JournalPaper) to).setJournalName(((JournalPaper) from).getJournalName());
+			((JournalPaper) to).setPageNumber(((JournalPaper) from).getPageNumber());
+		} else if (from instanceof ConferencePaper && to instanceof ConferencePaper) {
+			((ConferencePaper) to).setConferenceName(((ConferencePaper) from).getConferenceName());
+			((ConferencePaper) to).setConferenceLocation(((ConferencePaper) from).getConferenceLocation());
+			((ConferencePaper) to).setConferenceDate(((ConferencePaper) from).getConferenceDate());
+		} else if (from instanceof Book && to instanceof Book) {
+			((Book) to).setiSBN(((Book) from).getiSBN());
+			((Book) to).setPublisher(((Book) from).getPublisher());
+		}
+	}
+
+	private static Publication findPublication(DataStorage dataStore, String publicationID) throws DPMSystemException {
+		Publication p = dataStore.getPublicationByID(publicationID);
+		if (p != null) {
+			return p;
+		}
+		throw new DPMSystemException("Journal refers to unknown publication " + publicationID + ".");
+	}
+
+	private static AcademicStaff findStaff(DataStorage dataStore, String emailAddress) throws DPMSystemException {
+		for (AcademicStaff a : dataStore.getAcademicStaffList()) {
+			if (a.getEmailAddress().equals(emailAddress)) {
+				return a;
+			}
+		}
+		throw new DPMSystemException("Journal refers to unknown staff member " + emailAddress + ".");
+	}
+
+	private static ResearchStudent findStudent(DataStorage dataStore, String emailAddress) throws DPMSystemException {
+		for (ResearchStudent r : dataStore.getResearchStudentList()) {
+			if (r.getEmailAddress().equals(emailAddress)) {
+				return r;
+			}
+		}
+		throw new DPMSystemException("Journal refers to unknown research student " + emailAddress + ".");
+	}
+
+	private static ResearchGroup findGroup(DataStorage dataStore, String groupID) throws DPMSystemException {
+		int id = Integer.parseInt(groupID);
+		for (ResearchGroup g : dataStore.getResearchGroupList()) {
+			if (g.getGroupID() == id) {
+				return g;
+			}
+		}
+		throw new DPMSystemException("Journal refers to unknown research group " + groupID + ".");
+	}
+
+	private static Seminar findSeminar(ResearchGroup group, String dateTime, String topic) throws DPMSystemException {
+		LocalDateTime when = LocalDateTime.parse(dateTime);
+		for (Seminar s : group.getSeminarList()) {
+			if (s.getDateTime().isEqual(when) && s.getTopic().equals(topic)) {
+				return s;
+			}
+		}
+		throw new DPMSystemException("Journal refers to unknown seminar " + topic + ".");
+	}
+
+	private static String[] concat(String first, String[] rest) {
+		String[] all = new String[rest.length + 1];
+		all[0] = first;
+		System.arraycopy(rest, 0, all, 1, rest.length);
+		return all;
+	}
+
+	private static void escape(String value, StringBuilder out) {
+		if (value == null) {
+			out.append("\\0");
+			return;
+		}
+		for (int i=0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			default:
+				out.append(c);
+			}
+		}
+	}
+
+	private static String unescape(String value) {
+		if (value.equals("\\0")) {
+			return null;
+		}
+		if (value.indexOf('\\') < 0) {
+			return value;
+		}
+
+		StringBuilder out = new StringBuilder(value.length());
+		for (int i=0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length()) {
+				char n = value.charAt(++i);
+				switch (n) {
+				case 't':
+					out.append('\t');
+					break;
+				case 'n':
+					out.append('\n');
+					break;
+				case 'r':
+					out.append('\r');
+					break;
+				default:
+					out.append(n);
+				}
+			} else {
+				out.append(c);
+			}
+		}
+		return out.toString();
+	}
+}
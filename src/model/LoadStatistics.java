@@ -0,0 +1,63 @@
+package model;
+
+/**
+ * The LoadStatistics class records how much data the last load read and how long it took,
+ * so that load throughput can be reported.
+ *
+ */
+public class LoadStatistics {
+	private long bytes;
+	private long elapsedNanos;
+	private int groups;
+	private int members;
+	private int publications;
+	private int seminars;
+
+	public LoadStatistics(long bytes, long elapsedNanos, int groups, int members, int publications, int seminars) {
+		this.bytes = bytes;
+		this.elapsedNanos = elapsedNanos;
+		this.groups = groups;
+		this.members = members;
+		this.publications = publications;
+		this.seminars = seminars;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public int getGroups() {
+		return groups;
+	}
+
+	public int getMembers() {
+		return members;
+	}
+
+	public int getPublications() {
+		return publications;
+	}
+
+	public int getSeminars() {
+		return seminars;
+	}
+
+	public double getPublicationsPerSecond() {
+		return elapsedNanos == 0 ? 0 : publications * 1e9 / elapsedNanos;
+	}
+
+	public double getMegabytesPerSecond() {
+		return elapsedNanos == 0 ? 0 : (bytes / (1024.0 * 1024.0)) * 1e9 / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Loaded %d groups, %d members, %d publications, %d seminars (%d bytes) in %.1f ms: "
+				+ "%.0f publications/s, %.2f MB/s", groups, members, publications, seminars, bytes,
+				elapsedNanos / 1e6, getPublicationsPerSecond(), getMegabytesPerSecond());
+	}
+}
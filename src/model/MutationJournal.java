@@ -0,0 +1,249 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * The MutationJournal class is an append-only log of the mutations made to the data store since the
+ * last checkpoint. Each mutation is appended as one compact line, so the cost of persisting a change is
+ * proportional to the size of the change rather than the size of the data store. Each line carries
+ * a checksum so that a record torn by a crash part way through an append can be recognised.
+ *
+ * Records are forced to disk outside the journal's lock, so appends carry on while a sync waits on the
+ * disk. Syncs are made one at a time, and one finding its records already forced by another returns
+ * at once, so threads syncing together share a single write to disk.
+ *
+ */
+public class MutationJournal {
+	private File file;
+	private FileOutputStream out;
+	private BufferedWriter writer;
+	private long nextSequence;
+	private int recordCount;
+	private int generations;
+	private long appendedRecords;
+	private long forcedRecords;
+	private final Object forceLock = new Object();
+
+	public MutationJournal(File file) {
+		this.file = file;
+		this.nextSequence = 1;
+		this.generations = 1;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getGenerations() {
+		return generations;
+	}
+
+	/**
+	 * Sets the number of journal segments kept, including the current one. Segments are rotated in
+	 * step with snapshot generations, so that falling back to an older snapshot can still replay
+	 * every record written after it.
+	 *
+	 * @param generations
+	 */
+	public void setGenerations(int generations) {
+		this.generations = Math.max(1, generations);
+	}
+
+	/**
+	 * Returns the number of records appended to the journal since it was last reset.
+	 *
+	 * @return Number of records.
+	 */
+	public synchronized int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Gives the record the next sequence number and appends it to the end of the journal. The record
+	 * is buffered, and is not durable until sync is next called.
+	 *
+	 * @param record
+	 * @throws IOException If the journal cannot be written to.
+	 */
+	public synchronized void append(JournalRecord record) throws IOException {
+		if (writer == null) {
+			out = new FileOutputStream(file, true);
+			writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		}
+
+		record.setSequence(nextSequence++);
+		writer.write(frame(record));
+		writer.write('\n');
+		recordCount++;
+		appendedRecords++;
+	}
+
+	/**
+	 * Writes any buffered records to the journal file and forces them to disk, so that every
+	 * record appended before the call is durable once it returns.
+	 *
+	 * @throws IOException If the journal cannot be written to.
+	 */
+	public void sync() throws IOException {
+		long appended;
+		FileOutputStream segment;
+		synchronized (this) {
+			if (writer == null) {
+				return;
+			}
+			writer.flush();
+			appended = appendedRecords;
+			segment = out;
+		}
+
+		synchronized (forceLock) {
+			if (forcedRecords >= appended) {
+				return;
+			}
+			try {
+				segment.getChannel().force(false);
+			} catch (ClosedChannelException e) {
+				//The segment was closed by a reset or close, once its records were folded into a snapshot.
+			}
+			forcedRecords = appended;
+		}
+	}
+
+	/**
+	 * Re-applies to the data store every record in the retained journal segments with a sequence number
+	 * greater than the given one, oldest first. A partially written final record in a segment, left by
+	 * a crash during an append, is ignored. The records applied must follow on from the given sequence
+	 * number without a break; a snapshot older than the retained segments reach back to cannot be
+	 * brought up to date, and replay refuses it rather than apply part of the tail.
+	 *
+	 * @param dataStore
+	 * @param afterSequence Sequence number of the last record already contained in the data store.
+	 * @return Sequence number of the last record applied, or afterSequence if none were.
+	 * @throws IOException If the journal cannot be read.
+	 * @throws DPMSystemException If a complete record cannot be applied, or a record is missing.
+	 */
+	public synchronized long replay(DataStorage dataStore, long afterSequence) throws IOException, DPMSystemException {
+		long lastSequence = afterSequence;
+		long highestSequence = 0;
+		recordCount = 0;
+
+		for (int i = generations - 1; i >= 0; i--) {
+			File segment = SnapshotGenerations.generationFile(file, i);
+			if (!segment.exists()) {
+				continue;
+			}
+
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(segment),
+					StandardCharsets.UTF_8))) {
+				String line = reader.readLine();
+				while (line != null) {
+					String next = reader.readLine();
+					String encoded = unframe(line);
+					if (encoded == null) {
+						if (next == null) {
+							break;
+						}
+						throw new DPMSystemException("Journal record is corrupt.");
+					}
+
+					JournalRecord record = JournalRecord.decode(encoded);
+
+					if (record.getSequence() > lastSequence) {
+						if (record.getSequence() != lastSequence + 1) {
+							throw new DPMSystemException("Journal records " + (lastSequence + 1) + " to "
+									+ (record.getSequence() - 1) + " are missing.");
+						}
+						record.applyTo(dataStore);
+						dataStore.markDirty(record);
+						lastSequence = record.getSequence();
+					}
+					highestSequence = Math.max(highestSequence, record.getSequence());
+					if (i == 0) {
+						recordCount++;
+					}
+					line = next;
+				}
+			}
+		}
+
+		nextSequence = Math.max(nextSequence, Math.max(lastSequence, highestSequence) + 1);
+		return lastSequence;
+	}
+
+	/**
+	 * Starts a new, empty journal segment once the records of the current one have been folded into
+	 * a snapshot. The current segment is kept as the newest previous generation.
+	 *
+	 * @throws IOException If the segments cannot be rotated.
+	 */
+	public synchronized void reset() throws IOException {
+		close();
+		if (generations > 1) {
+			SnapshotGenerations.rotate(file, generations);
+		} else {
+			new FileOutputStream(file).close();
+		}
+		recordCount = 0;
+	}
+
+	/**
+	 * Sets the sequence number that the next appended record will be given.
+	 *
+	 * @param nextSequence
+	 */
+	public void setNextSequence(long nextSequence) {
+		this.nextSequence = nextSequence;
+	}
+
+	public long getNextSequence() {
+		return nextSequence;
+	}
+
+	//Prefixes the encoded record with its checksum, so that a torn final line can be detected.
+	private static String frame(JournalRecord record) {
+		String encoded = record.encode();
+		return Long.toHexString(checksum(encoded)) + "\t" + encoded;
+	}
+
+	//Returns the encoded record, or null if the line is incomplete or its checksum does not match.
+	private static String unframe(String line) {
+		int tab = line.indexOf('\t');
+		if (tab < 0) {
+			return null;
+		}
+
+		String encoded = line.substring(tab + 1);
+		try {
+			if (Long.parseLong(line.substring(0, tab), 16) != checksum(encoded)) {
+				return null;
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return encoded;
+	}
+
+	private static long checksum(String encoded) {
+		CRC32 crc = new CRC32();
+		crc.update(encoded.getBytes(StandardCharsets.UTF_8));
+		return crc.getValue();
+	}
+
+	public synchronized void close() throws IOException {
+		if (writer != null) {
+			writer.close();
+			writer = null;
+			out = null;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package model;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The PersistenceScheduler class takes disk latency off the interactive path. When the data store is
+ * marked dirty, the journal records appended since the last write are committed together on a background
+ * thread, no later than the configured maximum delay, so a burst of edits costs one write to disk rather
+ * than one per edit. Callers that need durability before continuing can wait on flush.
+ *
+ */
+public class PersistenceScheduler {
+	private DataStorage dataStore;
+	private ScheduledExecutorService executor;
+	private long maxDelayMillis;
+	private boolean writeScheduled;
+	private IOException lastFailure;
+	private Thread shutdownHook;
+
+	/**
+	 * Creates a scheduler for the given data store and registers it with the data store.
+	 *
+	 * @param dataStore
+	 * @param maxDelayMillis Longest time a mutation may wait before it is written to disk.
+	 */
+	public PersistenceScheduler(DataStorage dataStore, long maxDelayMillis) {
+		this.dataStore = dataStore;
+		this.maxDelayMillis = maxDelayMillis;
+		this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "DPMSystem persistence");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		shutdownHook = new Thread(this::flushQuietly, "DPMSystem persistence shutdown");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+		dataStore.setPersistenceScheduler(this);
+	}
+
+	public long getMaxDelayMillis() {
+		return maxDelayMillis;
+	}
+
+	public void setMaxDelayMillis(long maxDelayMillis) {
+		this.maxDelayMillis = maxDelayMillis;
+	}
+
+	/**
+	 * Notes that the journal holds records that have not yet been written, scheduling a write if
+	 * one is not already pending.
+	 */
+	public synchronized void markDirty() {
+		if (!writeScheduled && !executor.isShutdown()) {
+			writeScheduled = true;
+			executor.schedule(this::write, maxDelayMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Blocks until every record appended before the call has been written to disk.
+	 *
+	 * @throws DPMSystemException If the records could not be written.
+	 */
+	public void flush() throws DPMSystemException {
+		if (executor.isShutdown()) {
+			syncJournal();
+		} else {
+			Future<?> done = executor.submit(this::write);
+			try {
+				done.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DPMSystemException("Interrupted while waiting for data to be written.");
+			} catch (ExecutionException e) {
+				throw new DPMSystemException("Could not write data: " + e.getCause().getMessage());
+			}
+		}
+
+		synchronized (this) {
+			if (lastFailure != null) {
+				IOException failure = lastFailure;
+				lastFailure = null;
+				throw new DPMSystemException("Could not write data: " + failure.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Writes any outstanding records and stops the background thread.
+	 *
+	 * @throws DPMSystemException If the outstanding records could not be written.
+	 */
+	public void shutdown() throws DPMSystemException {
+		try {
+			flush();
+		} finally {
+			executor.shutdown();
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException e) {
+				//Already shutting down, in which case the hook runs anyway.
+			}
+		}
+	}
+
+	private void write() {
+		synchronized (this) {
+			writeScheduled = false;
+		}
+
+		try {
+			dataStore.getJournal().sync();
+		} catch (IOException e) {
+			synchronized (this) {
+				lastFailure = e;
+			}
+			e.printStackTrace();
+		}
+	}
+
+	private void syncJournal() throws DPMSystemException {
+		try {
+			dataStore.getJournal().sync();
+		} catch (IOException e) {
+			throw new DPMSystemException("Could not write data: " + e.getMessage());
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			syncJournal();
+		} catch (DPMSystemException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * The PersistentList class is a list that cannot be altered, from which altered copies are made that
+ * share most of their structure with the original. Elements are held in chunks of up to CHUNK_SIZE, so
+ * removing an element copies one chunk and the array of references to the chunks, rather than the whole
+ * list, and every copy remains valid for as long as it is held. The last chunk is held apart from the
+ * others as the tail, so appending an element copies only the tail until it fills.
+ *
+ * Chunks left less than half full by removals are merged with a neighbour where the two fit in one.
+ *
+ * @param <E> Type of element.
+ */
+public final class PersistentList<E> extends AbstractList<E> implements RandomAccess {
+	static final int CHUNK_SIZE = 256;
+
+	private static final PersistentList<Object> EMPTY = new PersistentList<Object>(new Object[0][], new int[0],
+			new Object[0]);
+
+	private final Object[][] chunks;
+	//Index one past the last element of each chunk.
+	private final int[] ends;
+	private final Object[] tail;
+
+	private PersistentList(Object[][] chunks, int[] ends, Object[] tail) {
+		this.chunks = chunks;
+		this.ends = ends;
+		this.tail = tail;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentList<E> empty() {
+		return (PersistentList<E>) EMPTY;
+	}
+
+	/**
+	 * Returns a copy of the list with the element appended.
+	 *
+	 * @param element
+	 * @return The new list.
+	 */
+	public PersistentList<E> with(E element) {
+		if (tail.length < CHUNK_SIZE) {
+			Object[] t = Arrays.copyOf(tail, tail.length + 1);
+			t[tail.length] = element;
+			return new PersistentList<E>(chunks, ends, t);
+		}
+
+		Object[][] c = Arrays.copyOf(chunks, chunks.length + 1);
+		c[chunks.length] = tail;
+		int[] e = Arrays.copyOf(ends, ends.length + 1);
+		e[ends.length] = size();
+		return new PersistentList<E>(c, e, new Object[] {element});
+	}
+
+	/**
+	 * Returns a copy of the list without the element at the given index.
+	 *
+	 * @param index
+	 * @return The new list.
+	 * @throws IndexOutOfBoundsException If the index is not within the list.
+	 */
+	public PersistentList<E> without(int index) {
+		int tailStart = tailStart();
+		if (index >= tailStart && index < size()) {
+			Object[] t = new Object[tail.length - 1];
+			System.arraycopy(tail, 0, t, 0, index - tailStart);
+			System.arraycopy(tail, index - tailStart + 1, t, index - tailStart, t.length - (index - tailStart));
+			return new PersistentList<E>(chunks, ends, t);
+		}
+
+		int chunk = chunkOf(index);
+		int start = chunk == 0 ? 0 : ends[chunk - 1];
+		Object[] removed = new Object[chunks[chunk].length - 1];
+		System.arraycopy(chunks[chunk], 0, removed, 0, index - start);
+		System.arraycopy(chunks[chunk], index - start + 1, removed, index - start, removed.length - (index - start));
+
+		int neighbour = -1;
+		if (removed.length < CHUNK_SIZE / 2) {
+			if (chunk + 1 < chunks.length && removed.length + chunks[chunk + 1].length <= CHUNK_SIZE) {
+				neighbour = chunk + 1;
+			} else if (chunk > 0 && removed.length + chunks[chunk - 1].length <= CHUNK_SIZE) {
+				neighbour = chunk - 1;
+			}
+		}
+
+		if (removed.length == 0 || neighbour >= 0) {
+			//The chunk is dropped, its elements, if any, going to the start or end of its neighbour.
+			Object[][] c = new Object[chunks.length - 1][];
+			int[] e = new int[ends.length - 1];
+			System.arraycopy(chunks, 0, c, 0, chunk);
+			System.arraycopy(chunks, chunk + 1, c, chunk, c.length - chunk);
+			System.arraycopy(ends, 0, e, 0, chunk);
+			for (int i=chunk; i < e.length; i++) {
+				e[i] = ends[i + 1] - 1;
+			}
+			if (neighbour > chunk) {
+				c[chunk] = concat(removed, chunks[neighbour]);
+			} else if (neighbour >= 0) {
+				c[neighbour] = concat(chunks[neighbour], removed);
+				e[neighbour] += removed.length;
+			}
+			return new PersistentList<E>(c, e, tail);
+		}
+
+		Object[][] c = chunks.clone();
+		c[chunk] = removed;
+		int[] e = ends.clone();
+		for (int i=chunk; i < e.length; i++) {
+			e[i]--;
+		}
+		return new PersistentList<E>(c, e, tail);
+	}
+
+	private static Object[] concat(Object[] a, Object[] b) {
+		Object[] c = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, c, a.length, b.length);
+		return c;
+	}
+
+	/**
+	 * Returns the index of the given element, compared by identity rather than equality.
+	 *
+	 * @param element
+	 * @return Index of the element, or -1 if it is not in the list.
+	 */
+	public int indexOfIdentical(Object element) {
+		int start = 0;
+		for (int c=0; c <= chunks.length; c++) {
+			Object[] chunk = c < chunks.length ? chunks[c] : tail;
+			for (int i=0; i < chunk.length; i++) {
+				if (chunk[i] == element) {
+					return start + i;
+				}
+			}
+			start += chunk.length;
+		}
+		return -1;
+	}
+
+	private int tailStart() {
+		return ends.length == 0 ? 0 : ends[ends.length - 1];
+	}
+
+	//Returns the chunk holding the element at the given index, or chunks.length for the tail.
+	private int chunkOf(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		int chunk = Arrays.binarySearch(ends, index);
+		return chunk >= 0 ? chunk + 1 : -chunk - 1;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		int chunk = chunkOf(index);
+		Object[] elements = chunk < chunks.length ? chunks[chunk] : tail;
+		return (E) elements[index - (chunk == 0 ? 0 : ends[chunk - 1])];
+	}
+
+	@Override
+	public int size() {
+		return tailStart() + tail.length;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private int chunk;
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				while (chunk < chunks.length && next == chunks[chunk].length) {
+					chunk++;
+					next = 0;
+				}
+				return chunk < chunks.length || next < tail.length;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public E next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return (E) (chunk < chunks.length ? chunks[chunk] : tail)[next++];
+			}
+		};
+	}
+}
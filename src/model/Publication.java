@@ -3,7 +3,7 @@ package model;
 import java.time.LocalDate;
 import java.util.ArrayList;
 
-public abstract class Publication {
+public abstract class Publication extends TrackedEntity {
 	public enum publicationType {
 		JOURNALPAPER,
 		CONFERENCEPAPER,
@@ -14,6 +14,11 @@ public abstract class Publication {
 	private String title;
 	private ArrayList<String> authorNames;
 	private String aBstract;
+	private AbstractCache.Location abstractLocation;
+	private PublicationListener listener;
+	private PublicationListener notified;
+	private Thread updater;
+	private int serial;
 	private int groupID;
 	private String staffEmail;
 	private publicationType type;
@@ -28,7 +33,7 @@ public abstract class Publication {
 		this.groupID = groupID;
 		this.staffEmail = staffEmail;
 		this.type = type;
-		this.setPublicationDate(publicationDate);
+		this.publicationDate = publicationDate;
 	}
 	
 	public publicationType getPublicationType() {
@@ -40,7 +45,9 @@ public abstract class Publication {
 	}
 
 	public void setPublicationID(String publicationID) {
+		changing();
 		this.publicationID = publicationID;
+		changed();
 	}
 
 	public String getTitle() {
@@ -48,7 +55,9 @@ public abstract class Publication {
 	}
 
 	public void setTitle(String title) {
+		changing();
 		this.title = title;
+		changed();
 	}
 
 	public ArrayList<String> getAuthorNames() {
@@ -56,23 +65,61 @@ public abstract class Publication {
 	}
 	
 	public void addAuthorName(String name) {
-		
+		changing();
+		try {
+			authorNames.add(name);
+		} finally {
+			changed();
+		}
 	}
 	
 	public void removeAuthorName(String name) {
-		
+		changing();
+		try {
+			authorNames.remove(name);
+		} finally {
+			changed();
+		}
 	}
 
 	public void setAuthorNames(ArrayList<String> authorNames) {
+		changing();
 		this.authorNames = authorNames;
+		changed();
 	}
 
+	/**
+	 * Returns the abstract, reading it from the snapshot file it was loaded from if it has not yet been read.
+	 * 
+	 * @return Abstract.
+	 */
 	public String getaBstract() {
+		if (abstractLocation != null) {
+			return abstractLocation.load();
+		}
 		return aBstract;
 	}
 
 	public void setaBstract(String aBstract) {
+		changing();
 		this.aBstract = aBstract;
+		this.abstractLocation = null;
+		changed();
+	}
+	
+	//Returns the abstract if it is held by the publication itself rather than left in a snapshot file.
+	String getLoadedAbstract() {
+		return aBstract;
+	}
+	
+	AbstractCache.Location getAbstractLocation() {
+		return abstractLocation;
+	}
+	
+	//Leaves the abstract in a snapshot file, to be read when it is first asked for.
+	void setAbstractLocation(AbstractCache.Location abstractLocation) {
+		this.abstractLocation = abstractLocation;
+		this.aBstract = null;
 	}
 
 	public int getGroupID() {
@@ -80,7 +127,9 @@ public abstract class Publication {
 	}
 
 	public void setGroupID(int groupID) {
+		changing();
 		this.groupID = groupID;
+		changed();
 	}
 
 	public String getStaffEmail() {
@@ -88,7 +137,80 @@ public abstract class Publication {
 	}
 
 	public void setStaffEmail(String staffEmail) {
+		changing();
 		this.staffEmail = staffEmail;
+		changed();
+	}
+	
+	PublicationListener getListener() {
+		return listener;
+	}
+	
+	void setListener(PublicationListener listener) {
+		this.listener = listener;
+	}
+	
+	//Returns the number the data store gave the publication when it was added, later publications having
+	//higher numbers, so sets of publications can be kept sorted and intersected.
+	int getSerial() {
+		return serial;
+	}
+	
+	void setSerial(int serial) {
+		this.serial = serial;
+	}
+	
+	/**
+	 * Makes several changes to the publication as one, so that it is taken out of the data store's indexes
+	 * once before the first and indexed again once after the last, rather than once for every field set.
+	 * Other threads changing the publication wait until the changes have been made.
+	 * 
+	 * @param changes Sets the fields to be changed.
+	 */
+	public void update(Runnable changes) {
+		//The updating thread is only ever compared with the current thread, so another thread reading a
+		//stale value still takes the usual path.
+		if (updater == Thread.currentThread()) {
+			changes.run();
+			return;
+		}
+		changing();
+		updater = Thread.currentThread();
+		try {
+			changes.run();
+		} finally {
+			updater = null;
+			changed();
+		}
+	}
+	
+	//Tells the listener a field is about to change, so it can remove the publication from its indexes.
+	//The listener told is remembered, so that the same one is told of the change even if the publication
+	//is removed from the data store in the meantime. Within update the publication has already been
+	//removed, so the listener is not told again.
+	protected void changing() {
+		if (updater == Thread.currentThread()) {
+			return;
+		}
+		PublicationListener l = listener;
+		if (l != null) {
+			l.publicationChanging(this);
+		}
+		notified = l;
+	}
+	
+	//Records a change to a field, and tells the listener so it can index the publication again, unless
+	//further changes are to be made within update.
+	protected void changed() {
+		markModified();
+		if (updater == Thread.currentThread()) {
+			return;
+		}
+		PublicationListener l = notified;
+		notified = null;
+		if (l != null) {
+			l.publicationChanged(this);
+		}
 	}
 	
 	/**
@@ -119,6 +241,8 @@ public abstract class Publication {
 	}
 
 	public void setPublicationDate(LocalDate publicationDate) {
+		changing();
 		this.publicationDate = publicationDate;
+		changed();
 	}
 }
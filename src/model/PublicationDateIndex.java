@@ -0,0 +1,165 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The PublicationDateIndex class keeps publications sorted by publication date, both over the whole
+ * department and within each research group, so the publications of a date range are found by walking
+ * only the dates inside it. Publications without a date are not indexed.
+ *
+ */
+public class PublicationDateIndex implements PublicationIndex {
+	private TreeMap<LocalDate, ArrayList<Publication>> publications;
+	private HashMap<Integer, TreeMap<LocalDate, ArrayList<Publication>>> groups;
+	private int size;
+
+	public PublicationDateIndex() {
+		publications = new TreeMap<LocalDate, ArrayList<Publication>>();
+		groups = new HashMap<Integer, TreeMap<LocalDate, ArrayList<Publication>>>();
+	}
+
+	@Override
+	public void add(Publication publication) {
+		LocalDate date = publication.getPublicationDate();
+		if (date == null) {
+			return;
+		}
+
+		add(publications, date, publication);
+		TreeMap<LocalDate, ArrayList<Publication>> group = groups.get(publication.getGroupID());
+		if (group == null) {
+			group = new TreeMap<LocalDate, ArrayList<Publication>>();
+			groups.put(publication.getGroupID(), group);
+		}
+		add(group, date, publication);
+		size++;
+	}
+
+	private static void add(TreeMap<LocalDate, ArrayList<Publication>> dates, LocalDate date,
+			Publication publication) {
+		ArrayList<Publication> list = dates.get(date);
+		if (list == null) {
+			list = new ArrayList<Publication>(1);
+			dates.put(date, list);
+		}
+		list.add(publication);
+	}
+
+	@Override
+	public void remove(Publication publication) {
+		LocalDate date = publication.getPublicationDate();
+		if (date == null || !remove(publications, date, publication)) {
+			return;
+		}
+
+		TreeMap<LocalDate, ArrayList<Publication>> group = groups.get(publication.getGroupID());
+		if (group != null) {
+			remove(group, date, publication);
+			if (group.isEmpty()) {
+				groups.remove(publication.getGroupID());
+			}
+		}
+		size--;
+	}
+
+	//Removes the publication by identity, as distinct publications may be equal.
+	private static boolean remove(TreeMap<LocalDate, ArrayList<Publication>> dates, LocalDate date,
+			Publication publication) {
+		ArrayList<Publication> list = dates.get(date);
+		if (list == null) {
+			return false;
+		}
+
+		for (int i=0; i < list.size(); i++) {
+			if (list.get(i) == publication) {
+				list.remove(i);
+				if (list.isEmpty()) {
+					dates.remove(date);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void clear() {
+		publications.clear();
+		groups.clear();
+		size = 0;
+	}
+
+	/**
+	 * Returns the publications dated between the given dates, inclusive.
+	 *
+	 * @param from Earliest date.
+	 * @param to Latest date.
+	 * @return Publications, oldest first and in the order they were added within a date.
+	 */
+	public List<Publication> get(LocalDate from, LocalDate to) {
+		return get(publications, from, to);
+	}
+
+	/**
+	 * Returns the publications of the given research group dated between the given dates, inclusive.
+	 *
+	 * @param from Earliest date.
+	 * @param to Latest date.
+	 * @param groupID
+	 * @return Publications, oldest first and in the order they were added within a date.
+	 */
+	public List<Publication> get(LocalDate from, LocalDate to, int groupID) {
+		TreeMap<LocalDate, ArrayList<Publication>> group = groups.get(groupID);
+		return group == null ? Collections.<Publication>emptyList() : get(group, from, to);
+	}
+
+	private static List<Publication> get(TreeMap<LocalDate, ArrayList<Publication>> dates, LocalDate from,
+			LocalDate to) {
+		if (from.isAfter(to)) {
+			return Collections.emptyList();
+		}
+
+		ArrayList<Publication> result = new ArrayList<Publication>();
+		for (Map.Entry<LocalDate, ArrayList<Publication>> e : dates.subMap(from, true, to, true).entrySet()) {
+			result.addAll(e.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of publications dated between the given dates, inclusive, optionally only those of
+	 * the given research group. Only the dates in the range are visited, and no list is built.
+	 *
+	 * @param from Earliest date.
+	 * @param to Latest date.
+	 * @param groupID Research group, or null for every group.
+	 * @return Number of publications.
+	 */
+	public int count(LocalDate from, LocalDate to, Integer groupID) {
+		TreeMap<LocalDate, ArrayList<Publication>> dates = groupID == null ? publications : groups.get(groupID);
+		if (dates == null || from.isAfter(to)) {
+			return 0;
+		}
+
+		int count = 0;
+		for (ArrayList<Publication> list : dates.subMap(from, true, to, true).values()) {
+			count += list.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of publications in the index.
+	 *
+	 * @return Number of publications.
+	 */
+	public int size() {
+		return size;
+	}
+}
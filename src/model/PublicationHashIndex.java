@@ -0,0 +1,109 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The PublicationHashIndex class indexes publications by a single string key, such as title or
+ * publicationID, giving constant time lookup. Keys are expected to be unique, but more than one
+ * publication may be held under a key, so an edit giving two publications the same title does not
+ * lose either of them.
+ *
+ * Changes are made under the data store's write lock, but lookups may be made without any lock and
+ * checked afterwards, so the keys are held in a ConcurrentHashMap, which can be read safely while it is
+ * being changed, unlike a HashMap, whose lookup may not return if caught part way through a resize.
+ *
+ */
+public class PublicationHashIndex implements PublicationIndex {
+	//Stands for a null key, which ConcurrentHashMap does not allow.
+	private static final Object NULL_KEY = new Object();
+
+	private Function<Publication, String> key;
+	private ConcurrentHashMap<Object, ArrayList<Publication>> publications;
+
+	/**
+	 * @param key Function giving the key a publication is indexed under.
+	 */
+	public PublicationHashIndex(Function<Publication, String> key) {
+		this.key = key;
+		this.publications = new ConcurrentHashMap<Object, ArrayList<Publication>>();
+	}
+
+	@Override
+	public void add(Publication publication) {
+		Object k = keyOf(key.apply(publication));
+		ArrayList<Publication> list = publications.get(k);
+		if (list == null) {
+			list = new ArrayList<Publication>(1);
+			publications.put(k, list);
+		}
+		list.add(publication);
+	}
+
+	@Override
+	public void remove(Publication publication) {
+		Object k = keyOf(key.apply(publication));
+		ArrayList<Publication> list = publications.get(k);
+		if (list == null) {
+			return;
+		}
+
+		//Removed by identity, as distinct publications may be equal.
+		for (int i=0; i < list.size(); i++) {
+			if (list.get(i) == publication) {
+				list.remove(i);
+				break;
+			}
+		}
+		if (list.isEmpty()) {
+			publications.remove(k);
+		}
+	}
+
+	@Override
+	public void clear() {
+		publications.clear();
+	}
+
+	/**
+	 * Returns the publication indexed under the given key.
+	 *
+	 * @param k
+	 * @return The publication, or the first added if there is more than one, or null if there is none.
+	 */
+	public Publication get(String k) {
+		ArrayList<Publication> list = publications.get(keyOf(k));
+		return list == null ? null : list.get(0);
+	}
+
+	/**
+	 * Returns every publication indexed under the given key.
+	 *
+	 * @param k
+	 * @return Publications, in the order they were added.
+	 */
+	public List<Publication> getAll(String k) {
+		ArrayList<Publication> list = publications.get(keyOf(k));
+		return list == null ? Collections.<Publication>emptyList() : Collections.unmodifiableList(list);
+	}
+
+	public boolean contains(String k) {
+		return publications.containsKey(keyOf(k));
+	}
+
+	/**
+	 * Returns the number of distinct keys in the index.
+	 *
+	 * @return Number of keys.
+	 */
+	public int size() {
+		return publications.size();
+	}
+
+	private static Object keyOf(String k) {
+		return k == null ? NULL_KEY : k;
+	}
+}
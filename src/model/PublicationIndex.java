@@ -0,0 +1,30 @@
+package model;
+
+/**
+ * Interface for indexes over the publications held by the data store. The data store adds every
+ * publication to its indexes when the publication is added, removes it when it is removed, and
+ * removes and re-adds it around any change to its fields, so an index always reflects the
+ * publication's current values.
+ *
+ */
+public interface PublicationIndex {
+	/**
+	 * The given publication is added to the index under its current values.
+	 *
+	 * @param publication
+	 */
+	public void add(Publication publication);
+
+	/**
+	 * The given publication is removed from the index, its values being those it was added under.
+	 *
+	 * @param publication
+	 */
+	public void remove(Publication publication);
+
+	/**
+	 * Every publication is removed from the index.
+	 *
+	 */
+	public void clear();
+}
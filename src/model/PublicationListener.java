@@ -0,0 +1,23 @@
+package model;
+
+/**
+ * Interface through which a publication tells the data store holding it that its fields are
+ * about to change, and that they have changed, so the data store can keep its indexes up to date.
+ *
+ */
+interface PublicationListener {
+	/**
+	 * Called before a field of the publication is changed.
+	 *
+	 * @param publication
+	 */
+	public void publicationChanging(Publication publication);
+
+	/**
+	 * Called after a field of the publication has been changed, on the same listener told the change was
+	 * coming, even if the publication has since been given another.
+	 *
+	 * @param publication
+	 */
+	public void publicationChanged(Publication publication);
+}
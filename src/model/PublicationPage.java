@@ -0,0 +1,124 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+
+/**
+ * The PublicationPage class holds one page of a search's results, together with a cursor from which the
+ * next page is read. Results are ordered by publication date, those without a date first, then by
+ * publicationID. The cursor records the position of the last publication on the page rather than a
+ * count, so pages stay in step when publications are added or removed between requests.
+ *
+ * Pages are read from indexes that keep their publications in this order, so reading a page costs only
+ * a lookup of the cursor's position and a walk over the publications on the page.
+ *
+ */
+public class PublicationPage {
+	static final Comparator<Publication> ORDER = new Comparator<Publication>() {
+		@Override
+		public int compare(Publication a, Publication b) {
+			LocalDate x = a.getPublicationDate();
+			LocalDate y = b.getPublicationDate();
+			if (x != y) {
+				if (x == null || y == null) {
+					return x == null ? -1 : 1;
+				}
+				int date = x.compareTo(y);
+				if (date != 0) {
+					return date;
+				}
+			}
+			int id = id(a).compareTo(id(b));
+			return id != 0 ? id : Integer.compare(a.getSerial(), b.getSerial());
+		}
+	};
+
+	private List<Publication> publications;
+	private String nextCursor;
+
+	private PublicationPage(List<Publication> publications, String nextCursor) {
+		this.publications = publications;
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * Returns the publications on the page.
+	 *
+	 * @return Publications, in date then publicationID order.
+	 */
+	public List<Publication> getPublications() {
+		return publications;
+	}
+
+	/**
+	 * Returns the cursor to pass to read the next page.
+	 *
+	 * @return Cursor, or null if this is the last page.
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public boolean hasNextPage() {
+		return nextCursor != null;
+	}
+
+	/**
+	 * Reads the page following the cursor from a set held in ORDER.
+	 *
+	 * @param publications Sorted set of publications.
+	 * @param cursor Cursor returned with the previous page, or null for the first page.
+	 * @param limit Maximum number of publications on the page.
+	 * @return The page.
+	 * @throws DPMSystemException If the cursor is malformed or the limit is not positive.
+	 */
+	static PublicationPage read(NavigableSet<Publication> publications, String cursor, int limit)
+			throws DPMSystemException {
+		if (limit <= 0) {
+			throw new DPMSystemException("Page size must be positive.");
+		}
+
+		Iterator<Publication> i = (cursor == null ? publications : publications.tailSet(position(cursor), false))
+				.iterator();
+		ArrayList<Publication> page = new ArrayList<Publication>(Math.min(limit, 64));
+		while (page.size() < limit && i.hasNext()) {
+			page.add(i.next());
+		}
+		String next = i.hasNext() ? cursor(page.get(page.size() - 1)) : null;
+		return new PublicationPage(Collections.unmodifiableList(page), next);
+	}
+
+	//A missing publicationID is ordered as an empty one, as that is how it is written in a cursor.
+	private static String id(Publication p) {
+		return p.getPublicationID() == null ? "" : p.getPublicationID();
+	}
+
+	//Returns a cursor of the form date:serial:publicationID, the date being empty if there is none.
+	private static String cursor(Publication p) {
+		return (p.getPublicationDate() == null ? "" : p.getPublicationDate().toString()) + ":" + p.getSerial() + ":"
+				+ id(p);
+	}
+
+	//Returns a publication holding only the fields compared by ORDER, at the position recorded by the cursor.
+	private static Publication position(String cursor) throws DPMSystemException {
+		String[] parts = cursor.split(":", 3);
+		if (parts.length != 3) {
+			throw new DPMSystemException("Invalid cursor.");
+		}
+
+		try {
+			LocalDate date = parts[0].isEmpty() ? null : LocalDate.parse(parts[0]);
+			Publication position = new Publication(parts[2], null, null, null, 0, null, null, date) {};
+			position.setSerial(Integer.parseInt(parts[1]));
+			return position;
+		} catch (DateTimeParseException | NumberFormatException e) {
+			throw new DPMSystemException("Invalid cursor.");
+		}
+	}
+}
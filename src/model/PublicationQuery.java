@@ -0,0 +1,323 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The PublicationQuery class finds the publications meeting a combination of conditions, such as
+ * conference papers by a given author in a given group published within a range of dates. A query is
+ * built by chaining its condition methods, each of which returns the query itself, and its results are
+ * read through stream().
+ *
+ * The query is planned when its stream is first read from. The number of publications meeting each
+ * condition backed by an index is looked up, and the smallest set is read from its index. Sets no more
+ * than INTERSECT_RATIO times the size of the result so far are read from their indexes too and
+ * intersected with it, both being sorted by the order in which the publications were added to the data
+ * store. Conditions whose sets are larger, and those with no index, are checked against each publication
+ * as it is streamed instead. A query with no indexed condition streams the whole publication list.
+ *
+ * The query is planned and its indexes read under the data store's read lock, the publications left being
+ * copied, so the stream can be consumed while the data store is changed. A query with no indexed condition
+ * streams the publication list of the data store's current snapshot, which needs no copying. The remaining
+ * conditions are checked against each publication as it is reached.
+ *
+ */
+public class PublicationQuery {
+	private static final int INTERSECT_RATIO = 4;
+	private static final Comparator<Publication> SERIAL_ORDER = new Comparator<Publication>() {
+		@Override
+		public int compare(Publication a, Publication b) {
+			return Integer.compare(a.getSerial(), b.getSerial());
+		}
+	};
+
+	private DataStorage dataStore;
+	private Publication.publicationType type;
+	private String author;
+	private Integer groupID;
+	private LocalDate from;
+	private LocalDate to;
+	private String staffEmail;
+	private String titleText;
+	private String plan;
+
+	PublicationQuery(DataStorage dataStore) {
+		this.dataStore = dataStore;
+	}
+
+	//A condition of the query, with the index giving the publications meeting it if there is one.
+	private static class Condition {
+		private String name;
+		private Predicate<Publication> test;
+		private Supplier<Collection<Publication>> index;
+		private int estimate;
+
+		private Condition(String name, Predicate<Publication> test) {
+			this.name = name;
+			this.test = test;
+		}
+
+		private Condition(String name, Predicate<Publication> test, Supplier<Collection<Publication>> index,
+				int estimate) {
+			this(name, test);
+			this.index = index;
+			this.estimate = estimate;
+		}
+	}
+
+	/**
+	 * Restricts the query to publications of the given type.
+	 *
+	 * @param type
+	 * @return This query.
+	 */
+	public PublicationQuery type(Publication.publicationType type) {
+		this.type = type;
+		return this;
+	}
+
+	/**
+	 * Restricts the query to publications listing the given author, ignoring case and differences in
+	 * whitespace between the names.
+	 *
+	 * @param author
+	 * @return This query.
+	 */
+	public PublicationQuery author(String author) {
+		this.author = AuthorIndex.normalize(author);
+		return this;
+	}
+
+	/**
+	 * Restricts the query to publications of the given research group.
+	 *
+	 * @param groupID
+	 * @return This query.
+	 */
+	public PublicationQuery group(int groupID) {
+		this.groupID = groupID;
+		return this;
+	}
+
+	/**
+	 * Restricts the query to publications dated between the given dates, inclusive.
+	 *
+	 * @param from Earliest date, or null for no earliest date.
+	 * @param to Latest date, or null for no latest date.
+	 * @return This query.
+	 */
+	public PublicationQuery publishedBetween(LocalDate from, LocalDate to) {
+		this.from = from == null ? LocalDate.MIN : from;
+		this.to = to == null ? LocalDate.MAX : to;
+		return this;
+	}
+
+	/**
+	 * Restricts the query to publications submitted by the member of staff with the given email address.
+	 *
+	 * @param staffEmail
+	 * @return This query.
+	 */
+	public PublicationQuery staffEmail(String staffEmail) {
+		this.staffEmail = staffEmail;
+		return this;
+	}
+
+	/**
+	 * Restricts the query to publications whose titles contain the given text, ignoring case.
+	 *
+	 * @param text
+	 * @return This query.
+	 */
+	public PublicationQuery titleContains(String text) {
+		this.titleText = text.toLowerCase();
+		return this;
+	}
+
+	/**
+	 * Returns a stream of the publications meeting every condition of the query, in the order they were
+	 * added to the data store. Nothing is looked up until the stream is read from.
+	 *
+	 * @return Matching publications.
+	 */
+	public Stream<Publication> stream() {
+		return StreamSupport.stream(() -> dataStore.read(this::execute), Spliterator.ORDERED | Spliterator.NONNULL,
+				false);
+	}
+
+	/**
+	 * Returns a description of how the query was last carried out, naming the condition whose index was
+	 * read first, those intersected with it and those checked against each publication, with the number
+	 * of publications estimated to meet each indexed condition.
+	 *
+	 * @return Plan of the query, or null if its stream has not been read from.
+	 */
+	public String getPlan() {
+		return plan;
+	}
+
+	//Plans the query, reads the smallest sets from their indexes and returns the publications left to be
+	//checked against the remaining conditions.
+	private Spliterator<Publication> execute() {
+		ArrayList<Condition> indexed = new ArrayList<Condition>();
+		ArrayList<Condition> checked = new ArrayList<Condition>();
+		conditions(indexed, checked);
+		Collections.sort(indexed, new Comparator<Condition>() {
+			@Override
+			public int compare(Condition a, Condition b) {
+				return Integer.compare(a.estimate, b.estimate);
+			}
+		});
+
+		Collection<Publication> candidates;
+		StringBuilder description = new StringBuilder();
+		if (indexed.isEmpty()) {
+			candidates = dataStore.getPublications();
+			description.append("scan ").append(candidates.size());
+		} else {
+			Condition first = indexed.get(0);
+			Publication[] result = sorted(first.index.get());
+			description.append("index ").append(first.name).append(" ").append(first.estimate);
+			for (int i=1; i < indexed.size(); i++) {
+				Condition c = indexed.get(i);
+				if (result.length > 0 && c.estimate <= (long) result.length * INTERSECT_RATIO) {
+					result = intersect(result, sorted(c.index.get()));
+					description.append(", intersect ").append(c.name).append(" ").append(c.estimate);
+				} else {
+					checked.add(c);
+				}
+			}
+			candidates = Arrays.asList(result);
+		}
+
+		Predicate<Publication> test = null;
+		for (Condition c : checked) {
+			test = test == null ? c.test : test.and(c.test);
+			description.append(", check ").append(c.name);
+		}
+		plan = description.toString();
+
+		Spliterator<Publication> publications = candidates.spliterator();
+		return test == null ? publications : new Filter(publications, test);
+	}
+
+	//Adds each condition of the query to the indexed list if an index can give the publications meeting it,
+	//with the number of publications it gives, and to the checked list otherwise.
+	private void conditions(List<Condition> indexed, List<Condition> checked) {
+		if (type != null) {
+			Collection<Publication> publications = dataStore.getTypeIndex().getAll(type.name());
+			indexed.add(new Condition("type", p -> p.getPublicationType() == type, () -> publications,
+					publications.size()));
+		}
+		if (author != null) {
+			indexed.add(new Condition("author", this::hasAuthor, () -> dataStore.getAuthorIndex().get(author),
+					dataStore.getAuthorIndex().count(author)));
+		}
+		if (staffEmail != null) {
+			Collection<Publication> publications = dataStore.getStaffEmailIndex().getAll(staffEmail);
+			indexed.add(new Condition("staffEmail", p -> staffEmail.equals(p.getStaffEmail()), () -> publications,
+					publications.size()));
+		}
+
+		//The date index also holds publications by group, but not those without a date, so a group on its
+		//own is checked rather than read from it.
+		if (from != null) {
+			PublicationDateIndex dates = dataStore.getDateIndex();
+			Predicate<Publication> inRange = p -> p.getPublicationDate() != null
+					&& !p.getPublicationDate().isBefore(from) && !p.getPublicationDate().isAfter(to);
+			if (groupID == null) {
+				indexed.add(new Condition("date", inRange, () -> dates.get(from, to), dates.count(from, to, null)));
+			} else {
+				indexed.add(new Condition("group and date", inRange.and(p -> p.getGroupID() == groupID),
+						() -> dates.get(from, to, groupID), dates.count(from, to, groupID)));
+			}
+		} else if (groupID != null) {
+			checked.add(new Condition("group", p -> p.getGroupID() == groupID));
+		}
+
+		if (titleText != null) {
+			checked.add(new Condition("title", p -> p.getTitle() != null
+					&& p.getTitle().toLowerCase().contains(titleText)));
+		}
+	}
+
+	private boolean hasAuthor(Publication publication) {
+		if (publication.getAuthorNames() != null) {
+			for (String a : publication.getAuthorNames()) {
+				if (AuthorIndex.normalize(a).equals(author)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static Publication[] sorted(Collection<Publication> publications) {
+		Publication[] array = publications.toArray(new Publication[publications.size()]);
+		Arrays.sort(array, SERIAL_ORDER);
+		return array;
+	}
+
+	//Returns the publications in both arrays, each being sorted by serial, by merging them.
+	private static Publication[] intersect(Publication[] a, Publication[] b) {
+		Publication[] result = new Publication[Math.min(a.length, b.length)];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length && j < b.length) {
+			int compare = Integer.compare(a[i].getSerial(), b[j].getSerial());
+			if (compare == 0) {
+				result[n++] = a[i];
+				i++;
+				j++;
+			} else if (compare < 0) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	//Passes on only the publications meeting the given test.
+	private static class Filter extends Spliterators.AbstractSpliterator<Publication>
+			implements Consumer<Publication> {
+		private Spliterator<Publication> publications;
+		private Predicate<Publication> test;
+		private Publication next;
+
+		private Filter(Spliterator<Publication> publications, Predicate<Publication> test) {
+			super(publications.estimateSize(), Spliterator.ORDERED | Spliterator.NONNULL);
+			this.publications = publications;
+			this.test = test;
+		}
+
+		@Override
+		public void accept(Publication publication) {
+			next = publication;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Publication> action) {
+			while (publications.tryAdvance(this)) {
+				if (test.test(next)) {
+					action.accept(next);
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
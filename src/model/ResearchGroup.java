@@ -3,7 +3,7 @@ package model;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 
-public class ResearchGroup {
+public class ResearchGroup extends TrackedEntity {
 	private String name;
 	private ArrayList<GroupMember> members;
 	private int groupID;
@@ -29,6 +29,7 @@ public class ResearchGroup {
 		}
 		else {
 			members.add(member);
+			markModified();
 		}
 	}
 	
@@ -41,6 +42,7 @@ public class ResearchGroup {
 	public void removeMember(GroupMember member) throws DPMSystemException {
 		if (members.contains(member)) {
 			members.remove(member);
+			markModified();
 		}
 		else {
 			throw new DPMSystemException("They are not a member of this group.");
@@ -63,6 +65,7 @@ public class ResearchGroup {
 		}
 		else {
 			seminarList.add(seminar);
+			markModified();
 		}
 	}
 	
@@ -78,6 +81,7 @@ public class ResearchGroup {
 		}
 		else {
 			seminarList.add(seminar);
+			markModified();
 		}
 	}
 	
@@ -90,6 +94,7 @@ public class ResearchGroup {
 	public void removeSeminar(Seminar seminar) throws DPMSystemException {
 		if (seminarList.contains(seminar)) {
 			seminarList.remove(seminar);
+			markModified();
 		}
 		else {
 			throw new DPMSystemException("Seminar not in list.");
@@ -106,6 +111,7 @@ public class ResearchGroup {
 
 	public void setName(String name) {
 		this.name = name;
+		markModified();
 	}
 
 	public ArrayList<GroupMember> getMembers() {
@@ -118,6 +124,7 @@ public class ResearchGroup {
 
 	public void setGroupID(int groupID) {
 		this.groupID = groupID;
+		markModified();
 	}
 
 	public AcademicStaff getSeminarCoordinator() {
@@ -126,6 +133,7 @@ public class ResearchGroup {
 
 	public void setSeminarCoordinator(AcademicStaff seminarCoordinator) {
 		this.seminarCoordinator = seminarCoordinator;
+		markModified();
 	}
 	
 	/**
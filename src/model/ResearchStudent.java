@@ -15,6 +15,7 @@ public class ResearchStudent extends GroupMember {
 
 	public void setStudentID(String studentID) {
 		this.studentID = studentID;
+		markModified();
 	}
 	
 	/**
@@ -0,0 +1,218 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The SearchResultCache class holds the results of recent searches, so that a search repeated before
+ * the publications it depends on change is answered without being carried out again. The least recently
+ * used result is evicted once the cache is full.
+ *
+ * Each result is stored with tags naming what it depends on, such as an author or a publication type.
+ * The cache is registered as an index with the data store, so it is told of every publication added,
+ * removed or edited, and drops only the results tagged with that publication's authors or type. Results
+ * depending on the whole collection, such as ranked full-text results, are tagged ALL_PUBLICATIONS and
+ * dropped on any change.
+ *
+ * A search carried out while a publication is being changed by another thread may miss the change, so
+ * each result is put along with the generation of the cache read before the search, and is not cached if
+ * a publication has changed since.
+ *
+ */
+public class SearchResultCache implements PublicationIndex {
+	/**
+	 * Tag of results depending on every publication.
+	 */
+	public static final String ALL_PUBLICATIONS = "*";
+
+	private static class Entry {
+		private List<Publication> result;
+		private String[] tags;
+	}
+
+	private int capacity;
+	private LinkedHashMap<String, Entry> entries;
+	private HashMap<String, HashSet<String>> keysByTag;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+	private long generation;
+
+	/**
+	 * @param capacity Maximum number of results held.
+	 */
+	public SearchResultCache(int capacity) {
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+		this.keysByTag = new HashMap<String, HashSet<String>>();
+	}
+
+	public static String authorTag(String author) {
+		return "author:" + AuthorIndex.normalize(author);
+	}
+
+	public static String typeTag(Publication.publicationType type) {
+		return "type:" + type.name();
+	}
+
+	/**
+	 * Returns the cached result of a search.
+	 *
+	 * @param key Key identifying the search and its parameters.
+	 * @return The result, which cannot be altered, or null if it is not cached.
+	 */
+	public synchronized List<Publication> get(String key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.result;
+	}
+
+	/**
+	 * Returns the number of changes to publications the cache has been told of, to be read before a search
+	 * whose result is to be cached.
+	 *
+	 * @return Generation of the cache.
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Caches the result of a search, evicting the least recently used result if the cache is full. The
+	 * result is not cached if a publication has changed since the given generation.
+	 *
+	 * @param key Key identifying the search and its parameters.
+	 * @param result Result of the search, of which a copy is cached.
+	 * @param generation Generation of the cache read before the search was carried out.
+	 * @param tags Tags of the authors, types or ALL_PUBLICATIONS the result depends on.
+	 */
+	public synchronized void put(String key, List<Publication> result, long generation, String... tags) {
+		if (generation != this.generation) {
+			return;
+		}
+		remove(key);
+		Entry entry = new Entry();
+		entry.result = Collections.unmodifiableList(new ArrayList<Publication>(result));
+		entry.tags = tags;
+		entries.put(key, entry);
+		for (String tag : tags) {
+			HashSet<String> keys = keysByTag.get(tag);
+			if (keys == null) {
+				keys = new HashSet<String>();
+				keysByTag.put(tag, keys);
+			}
+			keys.add(key);
+		}
+
+		Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+		while (entries.size() > capacity && eldest.hasNext()) {
+			Map.Entry<String, Entry> e = eldest.next();
+			eldest.remove();
+			untag(e.getKey(), e.getValue());
+			evictions++;
+		}
+	}
+
+	/**
+	 * Drops every result stored with the given tag.
+	 *
+	 * @param tag
+	 */
+	public synchronized void invalidate(String tag) {
+		HashSet<String> keys = keysByTag.remove(tag);
+		if (keys == null) {
+			return;
+		}
+		for (String key : keys) {
+			if (remove(key)) {
+				invalidations++;
+			}
+		}
+	}
+
+	private boolean remove(String key) {
+		Entry entry = entries.remove(key);
+		untag(key, entry);
+		return entry != null;
+	}
+
+	private void untag(String key, Entry entry) {
+		if (entry == null) {
+			return;
+		}
+		for (String tag : entry.tags) {
+			HashSet<String> keys = keysByTag.get(tag);
+			if (keys != null) {
+				keys.remove(key);
+				if (keys.isEmpty()) {
+					keysByTag.remove(tag);
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized void add(Publication publication) {
+		invalidate(publication);
+	}
+
+	@Override
+	public synchronized void remove(Publication publication) {
+		invalidate(publication);
+	}
+
+	//Drops the results depending on any of the publication's authors or its type.
+	private void invalidate(Publication publication) {
+		generation++;
+		invalidate(ALL_PUBLICATIONS);
+		invalidate(typeTag(publication.getPublicationType()));
+		if (publication.getAuthorNames() != null) {
+			for (String author : publication.getAuthorNames()) {
+				invalidate(authorTag(author));
+			}
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		generation++;
+		invalidations += entries.size();
+		entries.clear();
+		keysByTag.clear();
+	}
+
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+}
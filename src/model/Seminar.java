@@ -2,7 +2,7 @@ package model;
 
 import java.time.LocalDateTime;
 
-public class Seminar {
+public class Seminar extends TrackedEntity {
 	private LocalDateTime dateTime;
 	private String location;
 	private String topic;
@@ -30,6 +30,7 @@ public class Seminar {
 			throw new DPMSystemException("Date has already passed.");
 		} else {
 			this.dateTime = dateTime;
+			markModified();
 		}
 	}
 
@@ -39,6 +40,7 @@ public class Seminar {
 
 	public void setLocation(String location) {
 		this.location = location;
+		markModified();
 	}
 
 	public String getTopic() {
@@ -47,6 +49,7 @@ public class Seminar {
 
 	public void setTopic(String topic) {
 		this.topic = topic;
+		markModified();
 	}
 
 	public ResearchGroup getGroup() {
@@ -55,6 +58,7 @@ public class Seminar {
 
 	public void setGroup(ResearchGroup group) {
 		this.group = group;
+		markModified();
 	}
 	
 	/**
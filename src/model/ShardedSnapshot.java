@@ -0,0 +1,170 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The ShardedSnapshot class stores the data store as one binary shard file per research group, holding
+ * the group's members, their publications and the group's seminars, together with a small manifest holding
+ * the system administrator and the shard file of each group. A checkpoint only rewrites the shards of groups
+ * that have changed since the last one, and shards are read in parallel when the data store is loaded.
+ *
+ * Shards are never overwritten in place. A changed group is written to a new shard file, the manifest is
+ * then atomically replaced to refer to it, and only then are shard files no longer referred to deleted, so
+ * a crash at any point leaves the previous manifest and every shard it refers to intact.
+ *
+ */
+public class ShardedSnapshot {
+	private static final String MANIFEST = "manifest.bin";
+
+	private File directory;
+	private LinkedHashMap<Integer, String> shards;
+
+	public ShardedSnapshot(File directory) {
+		this.directory = directory;
+		this.shards = new LinkedHashMap<Integer, String>();
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public File getManifestFile() {
+		return new File(directory, MANIFEST);
+	}
+
+	public boolean exists() {
+		return getManifestFile().exists();
+	}
+
+	/**
+	 * Writes the shards of the given research groups, and of any group that has no shard yet, followed by
+	 * a new manifest. If the data store leaves abstracts on disk, the publications of each shard written
+	 * then read their abstracts from it.
+	 *
+	 * @param dataStore
+	 * @param dirtyGroups IDs of the groups whose shards must be rewritten, or null to rewrite every shard.
+	 * @throws IOException If a shard or the manifest cannot be written.
+	 */
+	public void write(DataStorage dataStore, Set<Integer> dirtyGroups) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create directory " + directory + ".");
+		}
+
+		long sequence = dataStore.getJournalSequence();
+		LinkedHashMap<Integer, String> written = new LinkedHashMap<Integer, String>();
+
+		for (ResearchGroup g : dataStore.getResearchGroupList()) {
+			String shard = shards.get(g.getGroupID());
+			if (shard == null || dirtyGroups == null || dirtyGroups.contains(g.getGroupID())) {
+				shard = "group-" + g.getGroupID() + "-" + sequence + ".bin";
+				File file = new File(directory, shard);
+				IdentityHashMap<Publication, long[]> abstracts = new IdentityHashMap<Publication, long[]>();
+				new SnapshotGenerations(file, 1).write(out -> {
+					BinarySnapshotWriter writer = new BinarySnapshotWriter(out);
+					writer.setAbstractPositions(dataStore.getAbstractCache() != null ? abstracts : null);
+					writer.write(sequence, null, Collections.singletonList(g), Collections.<Integer, String>emptyMap());
+				});
+				dataStore.bindAbstracts(file, abstracts);
+			}
+			written.put(g.getGroupID(), shard);
+		}
+
+		new SnapshotGenerations(getManifestFile(), 1).write(out -> new BinarySnapshotWriter(out)
+				.write(sequence, dataStore.getSystemAdmin(), Collections.<ResearchGroup>emptyList(), written));
+		shards = written;
+
+		deleteUnreferencedShards();
+	}
+
+	/**
+	 * Reads the manifest and every shard it refers to into the given data store, which is expected to be
+	 * empty and bulk loading. Shards are parsed in parallel, each into its own reader, and then added to
+	 * the data store in the manifest's order.
+	 *
+	 * @param dataStore
+	 * @return Statistics for the load.
+	 * @throws IOException If the manifest or a shard cannot be read.
+	 * @throws DPMSystemException Passed to it from the data store or the objects being rebuilt.
+	 */
+	public LoadStatistics read(DataStorage dataStore) throws IOException, DPMSystemException {
+		long start = System.nanoTime();
+		BinarySnapshotReader manifest = new BinarySnapshotReader(getManifestFile());
+		manifest.read(dataStore);
+		long bytes = getManifestFile().length();
+
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(manifest.getShards().size(), Runtime.getRuntime().availableProcessors())));
+		try {
+			ArrayList<Future<BinarySnapshotReader>> parsed = new ArrayList<Future<BinarySnapshotReader>>();
+			for (String shard : manifest.getShards().values()) {
+				File file = new File(directory, shard);
+				bytes += file.length();
+				parsed.add(executor.submit(() -> {
+					BinarySnapshotReader reader = new BinarySnapshotReader(file, dataStore.getAbstractCache());
+					reader.parse();
+					return reader;
+				}));
+			}
+
+			int members = 0;
+			int publications = 0;
+			int seminars = 0;
+			for (int i=0; i < parsed.size(); i++) {
+				BinarySnapshotReader reader = parsed.get(i).get();
+				reader.addTo(dataStore);
+				members += reader.getMemberCount();
+				publications += reader.getPublicationCount();
+				seminars += reader.getSeminarCount();
+			}
+
+			shards = new LinkedHashMap<Integer, String>(manifest.getShards());
+			return new LoadStatistics(bytes, System.nanoTime() - start, parsed.size(), members, publications, seminars);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading shards.");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof DPMSystemException) {
+				throw (DPMSystemException) e.getCause();
+			}
+			throw new IOException("Could not read shard: " + e.getCause().getMessage(), e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	//Deletes shard files left over from earlier checkpoints.
+	private void deleteUnreferencedShards() {
+		Set<String> referenced = new HashSet<String>(shards.values());
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		for (File f : files) {
+			if (f.getName().startsWith("group-") && !referenced.contains(f.getName())) {
+				f.delete();
+			}
+		}
+	}
+
+	/**
+	 * Returns the shard file of each group as of the last read or write, keyed by group ID.
+	 *
+	 * @return Shard file names.
+	 */
+	public Map<Integer, String> getShards() {
+		return Collections.unmodifiableMap(shards);
+	}
+}
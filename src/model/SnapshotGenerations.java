@@ -0,0 +1,148 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * The SnapshotGenerations class writes snapshots of the data store crash-safely. Each snapshot is written
+ * to a temporary file, forced to disk, and then atomically renamed over the current file, so a crash part
+ * way through a write never leaves a truncated snapshot in its place. The previous snapshots are kept as
+ * numbered generations (file.1, file.2, ...) to fall back on should the newest one prove unreadable.
+ *
+ */
+public class SnapshotGenerations {
+	/**
+	 * Writes the content of a snapshot to the stream it is given.
+	 */
+	public interface SnapshotWriter {
+		public void write(OutputStream out) throws IOException;
+	}
+
+	private File file;
+	private int generations;
+
+	/**
+	 * @param file Current snapshot file.
+	 * @param generations Number of snapshots kept, including the current one.
+	 */
+	public SnapshotGenerations(File file, int generations) {
+		this.file = file;
+		this.generations = Math.max(1, generations);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getGenerations() {
+		return generations;
+	}
+
+	public void setGenerations(int generations) {
+		this.generations = Math.max(1, generations);
+	}
+
+	/**
+	 * Returns the file holding the given generation, generation 0 being the current snapshot.
+	 *
+	 * @param generation
+	 * @return Generation file.
+	 */
+	public File getGenerationFile(int generation) {
+		return generationFile(file, generation);
+	}
+
+	/**
+	 * Returns the generation files that exist, newest first.
+	 *
+	 * @return List of existing generation files.
+	 */
+	public ArrayList<File> getExistingGenerations() {
+		ArrayList<File> existing = new ArrayList<File>();
+		for (int i=0; i < generations; i++) {
+			File f = getGenerationFile(i);
+			if (f.exists()) {
+				existing.add(f);
+			}
+		}
+		return existing;
+	}
+
+	/**
+	 * Writes a new snapshot. The content is written to a temporary file and forced to disk, the existing
+	 * generations are shifted back by one, and the temporary file is then atomically renamed into place.
+	 *
+	 * @param writer Writes the content of the snapshot.
+	 * @throws IOException If the snapshot cannot be written, in which case the existing generations are untouched.
+	 */
+	public void write(SnapshotWriter writer) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+
+		try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+			OutputStream out = new BufferedOutputStream(fileOut);
+			writer.write(out);
+			out.flush();
+			fileOut.getChannel().force(true);
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+
+		rotate(file, generations);
+		move(temp, file);
+		forceDirectory(file);
+	}
+
+	/**
+	 * Shifts each generation of the given file back by one, discarding the oldest, so that the
+	 * current file becomes generation 1.
+	 *
+	 * @param file
+	 * @param generations Number of generations kept, including the current one.
+	 * @throws IOException If a generation cannot be renamed.
+	 */
+	public static void rotate(File file, int generations) throws IOException {
+		if (generations <= 1) {
+			return;
+		}
+
+		Files.deleteIfExists(generationFile(file, generations - 1).toPath());
+		for (int i = generations - 2; i >= 0; i--) {
+			File from = generationFile(file, i);
+			if (from.exists()) {
+				move(from, generationFile(file, i + 1));
+			}
+		}
+	}
+
+	static File generationFile(File file, int generation) {
+		return generation == 0 ? file : new File(file.getPath() + "." + generation);
+	}
+
+	private static void move(File from, File to) throws IOException {
+		try {
+			Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	//Forces the directory entry for the renamed file to disk. Not every platform allows a directory to be opened.
+	private static void forceDirectory(File file) {
+		File dir = file.getAbsoluteFile().getParentFile();
+		try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			//Best effort only.
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * The SortedPublicationIndex class indexes publications by a single string key, such as type, keeping
+ * the publications under each key sorted by date and publicationID, so that they can be read a page at
+ * a time without listing every publication under the key.
+ *
+ */
+public class SortedPublicationIndex implements PublicationIndex {
+	private Function<Publication, String> key;
+	private HashMap<String, TreeSet<Publication>> publications;
+
+	/**
+	 * @param key Function giving the key a publication is indexed under.
+	 */
+	public SortedPublicationIndex(Function<Publication, String> key) {
+		this.key = key;
+		this.publications = new HashMap<String, TreeSet<Publication>>();
+	}
+
+	@Override
+	public void add(Publication publication) {
+		String k = key.apply(publication);
+		TreeSet<Publication> set = publications.get(k);
+		if (set == null) {
+			set = new TreeSet<Publication>(PublicationPage.ORDER);
+			publications.put(k, set);
+		}
+		set.add(publication);
+	}
+
+	@Override
+	public void remove(Publication publication) {
+		String k = key.apply(publication);
+		TreeSet<Publication> set = publications.get(k);
+		if (set != null && set.remove(publication) && set.isEmpty()) {
+			publications.remove(k);
+		}
+	}
+
+	@Override
+	public void clear() {
+		publications.clear();
+	}
+
+	/**
+	 * Returns every publication indexed under the given key.
+	 *
+	 * @param k
+	 * @return Publications, in date then publicationID order.
+	 */
+	public NavigableSet<Publication> getAll(String k) {
+		TreeSet<Publication> set = publications.get(k);
+		return set == null ? Collections.<Publication>emptyNavigableSet() : Collections.unmodifiableNavigableSet(set);
+	}
+
+	/**
+	 * Returns a page of the publications indexed under the given key.
+	 *
+	 * @param k
+	 * @param cursor Cursor returned with the previous page, or null for the first page.
+	 * @param limit Maximum number of publications on the page.
+	 * @return The page.
+	 * @throws DPMSystemException If the cursor is malformed or the limit is not positive.
+	 */
+	public PublicationPage page(String k, String cursor, int limit) throws DPMSystemException {
+		return PublicationPage.read(getAll(k), cursor, limit);
+	}
+
+	/**
+	 * Returns the number of distinct keys in the index.
+	 *
+	 * @return Number of keys.
+	 */
+	public int size() {
+		return publications.size();
+	}
+}
@@ -0,0 +1,62 @@
+package model;
+
+/**
+ * The TrackedEntity class records changes made to an entity of the data store. Every change increments
+ * the entity's modification count, and the entity is dirty until the data store next takes a checkpoint,
+ * so persistence can tell which entities have changed rather than treating everything as changed.
+ *
+ * The count is incremented after the change is made, and is volatile, so a save reading it from another
+ * thread before encoding the entity can tell whether what it encoded may already be out of date.
+ *
+ * The count also serves as the entity's version for optimistic edits: a client reads it along with the
+ * entity and hands it back with its edit, which is refused through checkVersion if anyone else has
+ * changed the entity in between, rather than holding a lock while the edit is made up.
+ *
+ */
+public abstract class TrackedEntity {
+	private volatile long modCount;
+	private long cleanModCount;
+
+	/**
+	 * Records that the entity has been changed.
+	 */
+	protected void markModified() {
+		modCount++;
+	}
+
+	/**
+	 * Returns the number of changes made to the entity since it was created.
+	 *
+	 * @return Modification count.
+	 */
+	public long getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * Checks that the entity is still at the given version, its modification count when it was read.
+	 *
+	 * @param version
+	 * @throws ConcurrentEditException If the entity has been changed since.
+	 */
+	public void checkVersion(long version) throws ConcurrentEditException {
+		long current = modCount;
+		if (current != version) {
+			throw new ConcurrentEditException(getClass().getSimpleName() + " has been changed since it was read.",
+					version, current);
+		}
+	}
+
+	/**
+	 * Returns whether the entity has been changed since the data store last took a checkpoint.
+	 *
+	 * @return True if changed, false if not.
+	 */
+	public boolean isDirty() {
+		return modCount != cleanModCount;
+	}
+
+	void markClean() {
+		cleanModCount = modCount;
+	}
+}
@@ -0,0 +1,116 @@
+package model;
+
+import java.util.ArrayDeque;
+
+/**
+ * The Transaction class groups the steps of a change spanning the data store and the model classes, such
+ * as adding a publication both to the data store and to its owner's list, so that they are made as one.
+ * Each step is applied together with the step that undoes it; if a later step fails, the transaction is
+ * aborted and the steps already made are undone in reverse order.
+ *
+ * A transaction holds the data store's write lock from beginTransaction until it is committed or aborted,
+ * so other threads see either none of its steps or all of them. Views are notified once, on commit, and
+ * the whole change is written to the journal as the single record given to commit.
+ *
+ * Transactions are used with try-with-resources; one closed without being committed is aborted.
+ *
+ */
+public final class Transaction implements AutoCloseable {
+	/**
+	 * A step of a transaction, or the step undoing it.
+	 */
+	public interface Step {
+		void run() throws DPMSystemException;
+	}
+
+	private final DataStorage dataStore;
+	private final ArrayDeque<Step> undo = new ArrayDeque<Step>();
+	private boolean finished;
+
+	Transaction(DataStorage dataStore) {
+		this.dataStore = dataStore;
+	}
+
+	/**
+	 * Makes a step of the transaction, recording how it is undone. A step that throws is taken to have
+	 * made no change, and is not undone when the transaction is aborted.
+	 *
+	 * @param step
+	 * @param undoStep Reverses the step.
+	 * @throws DPMSystemException Passed to it from the step.
+	 */
+	public void apply(Step step, Step undoStep) throws DPMSystemException {
+		checkOpen();
+		step.run();
+		undo.push(undoStep);
+	}
+
+	/**
+	 * Commits the transaction, appending the given record to the journal and notifying views once. The
+	 * record is written to disk after the data store's lock has been released, as in persist.
+	 *
+	 * @param record Journal record describing the whole change, or null if nothing is to be persisted.
+	 * @throws DPMSystemException If the record cannot be written, in which case the transaction is aborted
+	 * if the record was not appended.
+	 */
+	public void commit(JournalRecord record) throws DPMSystemException {
+		checkOpen();
+		boolean sync = false;
+		if (record != null) {
+			try {
+				sync = dataStore.appendToJournal(record);
+			} catch (DPMSystemException e) {
+				abort();
+				throw e;
+			}
+		}
+		finished = true;
+		dataStore.endTransaction();
+
+		dataStore.notifyViews();
+		if (sync) {
+			dataStore.syncJournal();
+		}
+		dataStore.checkpointIfDue();
+	}
+
+	/**
+	 * Undoes the steps made so far, latest first, and ends the transaction. An undo step that fails is
+	 * reported and the rest are still run. Does nothing if the transaction has already ended.
+	 */
+	public void abort() {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		try {
+			while (!undo.isEmpty()) {
+				try {
+					undo.pop().run();
+				} catch (DPMSystemException e) {
+					System.out.println("Could not undo step: " + e.getMessage());
+				}
+			}
+		} finally {
+			dataStore.endTransaction();
+		}
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Aborts the transaction unless it has been committed.
+	 */
+	@Override
+	public void close() {
+		abort();
+	}
+
+	private void checkOpen() throws DPMSystemException {
+		if (finished) {
+			throw new DPMSystemException("Transaction has already ended.");
+		}
+	}
+}